@@ -0,0 +1,314 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs a compiled DFA with self-loop acceleration.
+ * A state is accelerable when it loops to itself on some symbols and moves
+ * to a different live state, one from which a final state can be reached,
+ * on at most {@link #MAX_EXITS} exit symbols; every other symbol has no
+ * transition or leads to a dead state, and so rejects. It must also have at
+ * least {@link #MIN_LOOPS_PER_EXIT} self-loop symbols per exit symbol,
+ * since states that are usually left after a character or two are faster
+ * to step through.
+ *
+ * Once the matcher has stayed in an accelerable state for {@link #MIN_RUN}
+ * characters it stops stepping character by character: it finds the next
+ * occurrence of any exit symbol with {@link String#indexOf(int, int)},
+ * which the JIT compiles to a vectorized search, and jumps straight there.
+ * Each exit symbol's next occurrence is remembered for the rest of the
+ * input, so every symbol is searched for at most once per position. Shorter
+ * runs are stepped as usual, so a state that is seldom stayed in costs
+ * little more than a plain run.
+ *
+ * A skipped run must still consist of self-loop symbols only, since any
+ * other character rejects. That check is a plain range or bitset test per
+ * character, much cheaper than a transition. It is dropped for states that
+ * loop on every non-exit symbol when the caller guarantees inputs stay
+ * within the alphabet.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class AcceleratedMatcher {
+
+    /** The most exit symbols a state may have and still be accelerated. */
+    public static final int MAX_EXITS = 3;
+
+    /** The fewest self-loop symbols an accelerated state has for each of its exit symbols. */
+    public static final int MIN_LOOPS_PER_EXIT = 2;
+
+    /** The number of self-loop steps taken in a state before the rest of the run is searched for. */
+    public static final int MIN_RUN = 8;
+
+    private final DFATable table;
+
+    // Per state: exit characters, or null if the state is not accelerated
+    private final char[][] exits;
+    // Per state: slot of each exit character in the per-input occurrence cache
+    private final int[][] exitSlots;
+    private final int slotCount;
+    // One bit per state, set if the state is accelerated; small enough to stay in cache on large tables
+    private final long[] accelerated;
+    private final boolean anyAccelerated;
+
+    // Per accelerated state: the self-loop characters, or null if a skipped run needs no check.
+    // Contiguous sets are checked as the range [loopLo, loopHi] and have no bitset.
+    private final long[][] loopBits;
+    private final char[] loopLo;
+    private final char[] loopHi;
+    private final boolean[] checkRun;
+
+    /**
+     * Analyzes a table for accelerable states; skipped runs are always
+     * checked for characters outside the self-loop.
+     *
+     * @param table The compiled DFA.
+     */
+    public AcceleratedMatcher(DFATable table) {
+        this(table, false);
+    }
+
+    /**
+     * Analyzes a table for accelerable states.
+     *
+     * @param table The compiled DFA.
+     * @param inputsWithinAlphabet true if the caller guarantees every input
+     *        character is in the alphabet, which drops the run check in
+     *        states that loop on every symbol but their exits.
+     */
+    public AcceleratedMatcher(DFATable table, boolean inputsWithinAlphabet) {
+        this.table = table;
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+
+        exits = new char[n][];
+        exitSlots = new int[n][];
+        accelerated = new long[(n + 63) >>> 6];
+        loopBits = new long[n][];
+        loopLo = new char[n];
+        loopHi = new char[n];
+        checkRun = new boolean[n];
+        boolean[] live = live(table);
+        Map<Character, Integer> slotOf = new HashMap<>();
+        Map<LoopSet, long[]> shared = new HashMap<>();
+        char[] buf = new char[MAX_EXITS];
+        for (int q = 0; q < n; q++) {
+            int count = 0;
+            int loops = 0;
+            boolean dead = false;
+            char lo = Character.MAX_VALUE;
+            char hi = 0;
+            for (int a = 0; a < k && count <= MAX_EXITS; a++) {
+                int to = table.next(q, a);
+                char c = table.getSymbol(a);
+                if (to == q) {
+                    loops++;
+                    lo = (char) Math.min(lo, c);
+                    hi = (char) Math.max(hi, c);
+                } else if (to == DFATable.NONE || !live[to]) {
+                    dead = true;
+                } else if (count < MAX_EXITS) {
+                    buf[count++] = c;
+                } else {
+                    count++;
+                }
+            }
+            if (loops == 0 || count > MAX_EXITS || loops < MIN_LOOPS_PER_EXIT * count) continue;
+            exits[q] = Arrays.copyOf(buf, count);
+            accelerated[q >>> 6] |= 1L << q;
+            exitSlots[q] = new int[count];
+            for (int i = 0; i < count; i++) {
+                Integer slot = slotOf.get(buf[i]);
+                if (slot == null) {
+                    slot = slotOf.size();
+                    slotOf.put(buf[i], slot);
+                }
+                exitSlots[q][i] = slot;
+            }
+            checkRun[q] = dead || !inputsWithinAlphabet;
+            if (!checkRun[q]) continue;
+            loopLo[q] = lo;
+            loopHi[q] = hi;
+            if (hi - lo + 1 == loops) continue;
+            long[] bits = new long[(hi >> 6) + 1];
+            for (int a = 0; a < k; a++) {
+                if (table.next(q, a) == q) {
+                    char c = table.getSymbol(a);
+                    bits[c >> 6] |= 1L << c;
+                }
+            }
+            loopBits[q] = shared.computeIfAbsent(new LoopSet(bits), key -> key.bits);
+        }
+        slotCount = slotOf.size();
+        anyAccelerated = Arrays.stream(accelerated).anyMatch(bits -> bits != 0);
+    }
+
+    /**
+     * Marks the states from which a final state can be reached.
+     */
+    private static boolean[] live(DFATable table) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        int[] predStart = new int[n + 1];
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) predStart[to + 1]++;
+            }
+        }
+        for (int q = 0; q < n; q++) predStart[q + 1] += predStart[q];
+        int[] preds = new int[predStart[n]];
+        int[] fill = Arrays.copyOf(predStart, n);
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) preds[fill[to]++] = q;
+            }
+        }
+        boolean[] live = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int q = 0; q < n; q++) {
+            if (table.isFinal(q)) {
+                live[q] = true;
+                queue[tail++] = q;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            for (int j = predStart[q]; j < predStart[q + 1]; j++) {
+                int p = preds[j];
+                if (!live[p]) {
+                    live[p] = true;
+                    queue[tail++] = p;
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Wraps a bitset so identical self-loop sets are stored once.
+     */
+    private static final class LoopSet {
+        final long[] bits;
+
+        LoopSet(long[] bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LoopSet && Arrays.equals(bits, ((LoopSet) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+
+    /**
+     * Returns whether a state is accelerated.
+     *
+     * @param state The state.
+     * @return true if the matcher skips runs of self-loop symbols in that state.
+     */
+    public boolean isAccelerated(int state) {
+        return exits[state] != null;
+    }
+
+    /**
+     * Returns the exit symbols of an accelerated state.
+     *
+     * @param state The state.
+     * @return A copy of the exit symbols, or null if the state is not accelerated.
+     */
+    public char[] getExitSymbols(int state) {
+        return exits[state] == null ? null : exits[state].clone();
+    }
+
+    /**
+     * Runs the DFA on an input, with the same result as {@link DFATable#accepts(CharSequence)}.
+     *
+     * @param s The input.
+     * @return true if the input is accepted, false otherwise.
+     */
+    public boolean accepts(String s) {
+        if (!anyAccelerated) return table.accepts(s);
+        int state = table.getStartState();
+        if (state == DFATable.NONE) return false;
+        int n = s.length();
+        int[] nextExit = null;
+        int i = 0;
+        long[] accelerated = this.accelerated;
+        while (i < n) {
+            // Plain steps until an accelerated state; this loop makes no calls, so the JIT keeps it tight
+            while ((accelerated[state >>> 6] & 1L << state) == 0) {
+                state = table.step(state, s.charAt(i));
+                if (state == DFATable.NONE) return false;
+                if (++i == n) return table.isFinal(state);
+            }
+            if (nextExit == null) {
+                nextExit = new int[slotCount];
+                Arrays.fill(nextExit, -1);
+            }
+            i = skip(state, s, i, nextExit);
+            if (i < 0) return false;
+            if (i == n) break;
+            state = table.step(state, s.charAt(i));
+            if (state == DFATable.NONE) return false;
+            i++;
+        }
+        return table.isFinal(state);
+    }
+
+    /**
+     * Skips the run of self-loop symbols starting at from in an accelerated state.
+     *
+     * @return The index of the first character that may leave the state, or -1 if the run rejects.
+     */
+    private int skip(int state, String s, int from, int[] nextExit) {
+        int n = s.length();
+        // Step through short runs as usual; search only once a run has lasted MIN_RUN characters
+        int i = from;
+        int probeEnd = Math.min(n, from + MIN_RUN);
+        while (i < probeEnd && table.step(state, s.charAt(i)) == state) i++;
+        if (i < probeEnd || i == n) return i;
+        char[] ex = exits[state];
+        int[] slots = exitSlots[state];
+        int stop = n;
+        for (int e = 0; e < ex.length; e++) {
+            int at = nextExit[slots[e]];
+            if (at < i) {
+                at = s.indexOf(ex[e], i);
+                if (at < 0) at = Integer.MAX_VALUE;
+                nextExit[slots[e]] = at;
+            }
+            if (at < stop) stop = at;
+        }
+        if (checkRun[state] && !inLoop(state, s, i, stop)) return -1;
+        return stop;
+    }
+
+    private boolean inLoop(int state, String s, int from, int to) {
+        long[] bits = loopBits[state];
+        if (bits == null) {
+            char lo = loopLo[state];
+            int width = loopHi[state] - lo;
+            for (int j = from; j < to; j++) {
+                int d = s.charAt(j) - lo;
+                if (d < 0 || d > width) return false;
+            }
+            return true;
+        }
+        for (int j = from; j < to; j++) {
+            char c = s.charAt(j);
+            int w = c >> 6;
+            if (w >= bits.length || (bits[w] & (1L << c)) == 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,424 @@
+package fa.dfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reactive stage that runs every incoming input through a DFA.
+ * Inputs are grouped into batches that are dispatched when they reach
+ * {@code batchSize} items or when the oldest item has waited
+ * {@code maxDelay}, whichever comes first. Batches run on the supplied
+ * executor, so a bounded pool serves any number of sources instead of one
+ * parked thread per source. Evaluation never blocks a pool thread.
+ *
+ * Backpressure is end to end: at most {@code maxInFlight} inputs are ever
+ * requested from upstream without their results having been delivered, and
+ * results are delivered only against the subscriber's request(n). When
+ * {@code ordered} is true results are delivered in the order the inputs
+ * arrived from upstream; otherwise each batch is delivered as soon as it
+ * finishes. The processor accepts a single subscriber.
+ *
+ * If evaluating a batch throws, or the executor rejects one, upstream is
+ * cancelled and the subscriber receives onError once the batches already
+ * running have finished.
+ *
+ * The DFA must not be modified while the processor is running.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class AcceptanceProcessor implements Flow.Processor<CharSequence, AcceptanceProcessor.Result> {
+
+    private final DFA dfa;
+    private final Executor executor;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    private final Object lock = new Object();
+
+    // Upstream side
+    private Flow.Subscription upstream;
+    private List<Result> batch = new ArrayList<>();
+    private long nextSequence;
+    private long nextBatch;
+    private long timerGeneration;
+    private ScheduledFuture<?> timeout;
+    private int outstanding;
+    private boolean upstreamDone;
+    private Throwable failure;
+
+    // Downstream side
+    private Flow.Subscriber<? super Result> downstream;
+    private boolean subscribed;
+    private final ArrayDeque<Result> ready = new ArrayDeque<>();
+    private final Map<Long, List<Result>> finished = new HashMap<>();
+    private long nextToRelease;
+    private long demand;
+    private Throwable badRequest;
+    private boolean terminated;
+    private boolean draining;
+    private boolean missed;
+
+    /**
+     * The outcome of running one input through the DFA.
+     */
+    public static final class Result {
+        private final long sequence;
+        private final CharSequence input;
+        private boolean accepted;
+
+        private Result(long sequence, CharSequence input) {
+            this.sequence = sequence;
+            this.input = input;
+        }
+
+        /**
+         * Returns the position of the input in the upstream sequence, starting at 0.
+         *
+         * @return The sequence number of the input.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the input that was checked.
+         *
+         * @return The input.
+         */
+        public CharSequence getInput() {
+            return input;
+        }
+
+        /**
+         * Returns whether the DFA accepted the input.
+         *
+         * @return true if the DFA accepts the input, false otherwise.
+         */
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        @Override
+        public String toString() {
+            return sequence + ":" + input + "=" + accepted;
+        }
+    }
+
+    /**
+     * Creates a processor.
+     *
+     * @param dfa The DFA to run inputs through.
+     * @param executor The executor that evaluates batches.
+     * @param batchSize The number of inputs that triggers a batch.
+     * @param maxDelay The longest an input waits for its batch to fill.
+     * @param unit The unit of maxDelay.
+     * @param maxInFlight The maximum number of inputs requested but not yet delivered.
+     * @param ordered Whether results must be delivered in input order.
+     * @throws IllegalArgumentException if batchSize or maxInFlight is not positive, or maxDelay is negative.
+     */
+    public AcceptanceProcessor(DFA dfa, Executor executor, int batchSize, long maxDelay, TimeUnit unit,
+            int maxInFlight, boolean ordered) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        if (maxDelay < 0) throw new IllegalArgumentException("maxDelay must not be negative: " + maxDelay);
+        this.dfa = dfa;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+        synchronized (lock) {
+            if (downstream == null) {
+                downstream = subscriber;
+                subscriber = null;
+            }
+        }
+        if (subscriber != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("AcceptanceProcessor supports a single subscriber"));
+            return;
+        }
+        // No signal may reach the subscriber before onSubscribe returns, so drain waits for this flag
+        downstream.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requestResults(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelResults();
+            }
+        });
+        synchronized (lock) {
+            subscribed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (lock) {
+            if (upstream != null || terminated) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(CharSequence item) {
+        if (item == null) throw new NullPointerException("onNext item must not be null");
+        Flow.Subscription rejected = null;
+        synchronized (lock) {
+            if (upstreamDone) return;
+            batch.add(new Result(nextSequence++, item));
+            if (batch.size() >= batchSize) {
+                rejected = dispatch();
+            } else if (batch.size() == 1) {
+                long generation = timerGeneration;
+                timeout = Timer.SCHEDULER.schedule(() -> flushIfStale(generation), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (rejected != null) {
+            rejected.cancel();
+            drain();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (lock) {
+            if (upstreamDone) return;
+            failure = throwable;
+            finishUpstream();
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            if (upstreamDone) return;
+            finishUpstream();
+        }
+        drain();
+    }
+
+    // Called with lock held; upstream has already terminated, so a rejection needs no cancel
+    private void finishUpstream() {
+        if (!batch.isEmpty()) dispatch();
+        upstreamDone = true;
+    }
+
+    private void flushIfStale(long generation) {
+        Flow.Subscription rejected = null;
+        synchronized (lock) {
+            if (generation == timerGeneration && !batch.isEmpty()) rejected = dispatch();
+        }
+        if (rejected != null) {
+            rejected.cancel();
+            drain();
+        }
+    }
+
+    // Called with lock held; returns the upstream subscription to cancel if the executor rejected the batch
+    private Flow.Subscription dispatch() {
+        List<Result> items = batch;
+        long id = nextBatch++;
+        batch = new ArrayList<>(batchSize);
+        cancelTimeout();
+        outstanding++;
+        try {
+            executor.execute(() -> evaluate(id, items));
+            return null;
+        } catch (RejectedExecutionException e) {
+            outstanding--;
+            return fail(e);
+        }
+    }
+
+    /**
+     * Records a failure of this stage, drops any batch that is still filling
+     * and stops taking input. The first failure wins. Called with lock held;
+     * the caller cancels the returned upstream subscription, if any, once the
+     * lock is released.
+     */
+    private Flow.Subscription fail(Throwable e) {
+        if (failure == null) failure = e;
+        batch.clear();
+        cancelTimeout();
+        Flow.Subscription s = upstreamDone ? null : upstream;
+        upstreamDone = true;
+        return s;
+    }
+
+    // Called with lock held
+    private void cancelTimeout() {
+        timerGeneration++;
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    private void evaluate(long id, List<Result> items) {
+        Throwable error = null;
+        try {
+            for (Result r : items) {
+                r.accepted = dfa.accepts(r.input.toString());
+            }
+        } catch (RuntimeException | Error e) {
+            error = e;
+        }
+        Flow.Subscription s = null;
+        synchronized (lock) {
+            outstanding--;
+            if (error != null) {
+                s = fail(error);
+            } else if (!ordered) {
+                ready.addAll(items);
+            } else {
+                finished.put(id, items);
+                List<Result> next;
+                while ((next = finished.remove(nextToRelease)) != null) {
+                    ready.addAll(next);
+                    nextToRelease++;
+                }
+            }
+        }
+        if (s != null) s.cancel();
+        drain();
+    }
+
+    private void requestResults(long n) {
+        synchronized (lock) {
+            if (terminated) return;
+            if (n <= 0) {
+                if (badRequest == null) badRequest = new IllegalArgumentException("request must be positive: " + n);
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+        }
+        drain();
+    }
+
+    private void cancelResults() {
+        Flow.Subscription s;
+        synchronized (lock) {
+            terminated = true;
+            ready.clear();
+            finished.clear();
+            batch.clear();
+            cancelTimeout();
+            s = upstreamDone ? null : upstream;
+            upstreamDone = true;
+        }
+        if (s != null) s.cancel();
+    }
+
+    /**
+     * Delivers ready results against outstanding demand and replenishes
+     * upstream demand by the number delivered. Only one thread drains at a
+     * time; a call that finds another drainer active makes it loop again.
+     */
+    private void drain() {
+        synchronized (lock) {
+            if (!subscribed) return;
+            if (draining) {
+                missed = true;
+                return;
+            }
+            draining = true;
+        }
+        int delivered = 0;
+        for (;;) {
+            Result next = null;
+            Throwable error = null;
+            boolean complete = false;
+            boolean exit = false;
+            Flow.Subscription s = null;
+            synchronized (lock) {
+                if (terminated) {
+                    draining = false;
+                    exit = true;
+                } else if (badRequest != null) {
+                    terminated = true;
+                    error = badRequest;
+                    s = upstreamDone ? null : upstream;
+                    upstreamDone = true;
+                } else if (upstreamDone && outstanding == 0
+                        && (failure != null || ready.isEmpty() && finished.isEmpty())) {
+                    terminated = true;
+                    error = failure;
+                    complete = failure == null;
+                } else if (demand > 0 && !ready.isEmpty()) {
+                    next = ready.poll();
+                    demand--;
+                    if (delivered + 1 >= batchSize && !upstreamDone) s = upstream;
+                } else {
+                    if (delivered > 0 && !upstreamDone) s = upstream;
+                    if (!missed) {
+                        draining = false;
+                        exit = true;
+                    }
+                    missed = false;
+                }
+            }
+            if (next != null) {
+                downstream.onNext(next);
+                delivered++;
+                if (s != null) {
+                    s.request(delivered);
+                    delivered = 0;
+                }
+            } else if (error != null) {
+                if (s != null) s.cancel();
+                downstream.onError(error);
+            } else if (complete) {
+                downstream.onComplete();
+            } else if (s != null) {
+                s.request(delivered);
+                delivered = 0;
+            }
+            if (exit) return;
+        }
+    }
+
+    /**
+     * Holds the shared daemon thread that fires batch timeouts.
+     */
+    private static final class Timer {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fa-dfa-batch-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,270 @@
+package fa.dfa;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Counts, samples and enumerates the strings of one length accepted by a DFA.
+ * Construction fills a table {@code ways[k][q]}, the number of strings of
+ * length k that lead from state q to a final state, in O(n*|Q|*|Sigma|) time.
+ * Counts that fit in a long are kept in primitive arrays; otherwise the
+ * table falls back to BigInteger.
+ *
+ * A sample walks forward from the start state, choosing each symbol with
+ * probability proportional to the number of accepted completions behind
+ * it, so every accepted string of length n is equally likely. Each sample
+ * costs O(n*|Sigma|) with no further table work.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class AcceptedStrings {
+
+    private final DFATable table;
+    private final int length;
+    private final long[][] ways;
+    private final BigInteger[][] bigWays;
+
+    /**
+     * Builds the counting table for strings of the given length.
+     *
+     * @param dfa The DFA whose language is counted.
+     * @param length The string length.
+     * @throws IllegalArgumentException if length is negative.
+     */
+    public AcceptedStrings(DFA dfa, int length) {
+        this(DFATable.compile(dfa), length);
+    }
+
+    /**
+     * Builds the counting table for strings of the given length.
+     *
+     * @param table The compiled DFA whose language is counted.
+     * @param length The string length.
+     * @throws IllegalArgumentException if length is negative.
+     */
+    public AcceptedStrings(DFATable table, int length) {
+        if (length < 0) throw new IllegalArgumentException("length must not be negative: " + length);
+        this.table = table;
+        this.length = length;
+        long[][] w = countLong(table, length);
+        this.ways = w;
+        this.bigWays = w == null ? countBig(table, length) : null;
+    }
+
+    private static long[][] countLong(DFATable table, int length) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        long[][] w = new long[length + 1][n];
+        for (int q = 0; q < n; q++) w[0][q] = table.isFinal(q) ? 1 : 0;
+        try {
+            for (int len = 1; len <= length; len++) {
+                long[] prev = w[len - 1];
+                long[] cur = w[len];
+                for (int q = 0; q < n; q++) {
+                    long sum = 0;
+                    for (int a = 0; a < k; a++) {
+                        int to = table.next(q, a);
+                        if (to != DFATable.NONE) sum = Math.addExact(sum, prev[to]);
+                    }
+                    cur[q] = sum;
+                }
+            }
+        } catch (ArithmeticException overflow) {
+            return null;
+        }
+        return w;
+    }
+
+    private static BigInteger[][] countBig(DFATable table, int length) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        BigInteger[][] w = new BigInteger[length + 1][n];
+        for (int q = 0; q < n; q++) w[0][q] = table.isFinal(q) ? BigInteger.ONE : BigInteger.ZERO;
+        for (int len = 1; len <= length; len++) {
+            BigInteger[] prev = w[len - 1];
+            BigInteger[] cur = w[len];
+            for (int q = 0; q < n; q++) {
+                BigInteger sum = BigInteger.ZERO;
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    if (to != DFATable.NONE) sum = sum.add(prev[to]);
+                }
+                cur[q] = sum;
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Returns the string length this instance counts.
+     *
+     * @return The string length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of accepted strings of the given length.
+     *
+     * @return The count.
+     * @throws ArithmeticException if the count does not fit in a long.
+     */
+    public long count() {
+        if (ways == null) throw new ArithmeticException("count exceeds long range, use countExact()");
+        int start = table.getStartState();
+        return start == DFATable.NONE ? 0 : ways[length][start];
+    }
+
+    /**
+     * Returns the number of accepted strings of the given length.
+     *
+     * @return The exact count.
+     */
+    public BigInteger countExact() {
+        int start = table.getStartState();
+        if (start == DFATable.NONE) return BigInteger.ZERO;
+        return ways != null ? BigInteger.valueOf(ways[length][start]) : bigWays[length][start];
+    }
+
+    /**
+     * Returns a uniformly random accepted string of the given length.
+     *
+     * @param rnd The source of randomness.
+     * @return An accepted string.
+     * @throws NoSuchElementException if no string of that length is accepted.
+     */
+    public String sample(Random rnd) {
+        int q = table.getStartState();
+        if (q == DFATable.NONE || !live(length, q)) {
+            throw new NoSuchElementException("no accepted string of length " + length);
+        }
+        int k = table.getSymbolCount();
+        char[] out = new char[length];
+        for (int i = 0; i < length; i++) {
+            int rem = length - i - 1;
+            int a = 0;
+            if (ways != null) {
+                long r = nextLong(rnd, ways[rem + 1][q]);
+                for (;; a++) {
+                    int to = table.next(q, a);
+                    if (to == DFATable.NONE) continue;
+                    r -= ways[rem][to];
+                    if (r < 0) break;
+                }
+            } else {
+                BigInteger r = nextBig(rnd, bigWays[rem + 1][q]);
+                for (;; a++) {
+                    int to = table.next(q, a);
+                    if (to == DFATable.NONE) continue;
+                    r = r.subtract(bigWays[rem][to]);
+                    if (r.signum() < 0) break;
+                }
+            }
+            out[i] = table.getSymbol(a);
+            q = table.next(q, a);
+        }
+        return new String(out);
+    }
+
+    /**
+     * Enumerates the accepted strings of the given length, ordered by symbol
+     * position in sigma. Dead branches are never explored.
+     *
+     * @return A lazy stream of the accepted strings.
+     */
+    public Stream<String> stream() {
+        Iterator<String> it = new Iterator<String>() {
+            private final int k = table.getSymbolCount();
+            private final char[] buf = new char[length];
+            private final int[] path = new int[length + 1];
+            private final int[] choice = new int[length];
+            private int depth = -1;
+            private String next;
+
+            {
+                int start = table.getStartState();
+                if (start != DFATable.NONE && live(length, start)) {
+                    path[0] = start;
+                    depth = 0;
+                    if (length > 0) choice[0] = -1;
+                    advance();
+                }
+            }
+
+            // Moves to the next complete string, or sets depth to -1 when done
+            private void advance() {
+                next = null;
+                while (depth >= 0) {
+                    if (depth == length) {
+                        next = new String(buf);
+                        depth--;
+                        return;
+                    }
+                    int q = path[depth];
+                    int a = choice[depth] + 1;
+                    int rem = length - depth - 1;
+                    while (a < k) {
+                        int to = table.next(q, a);
+                        if (to != DFATable.NONE && live(rem, to)) break;
+                        a++;
+                    }
+                    if (a == k) {
+                        depth--;
+                        continue;
+                    }
+                    choice[depth] = a;
+                    buf[depth] = table.getSymbol(a);
+                    path[depth + 1] = table.next(q, a);
+                    depth++;
+                    if (depth < length) choice[depth] = -1;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) throw new NoSuchElementException();
+                String s = next;
+                advance();
+                return s;
+            }
+        };
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        Spliterator<String> split = ways != null
+                ? Spliterators.spliterator(it, count(), characteristics)
+                : Spliterators.spliteratorUnknownSize(it, characteristics);
+        return StreamSupport.stream(split, false);
+    }
+
+    private boolean live(int rem, int q) {
+        return ways != null ? ways[rem][q] != 0 : bigWays[rem][q].signum() != 0;
+    }
+
+    private static long nextLong(Random rnd, long bound) {
+        long r = rnd.nextLong();
+        long m = bound - 1;
+        if ((bound & m) == 0L) return r & m;
+        for (long u = r >>> 1; u + m - (r = u % bound) < 0L; u = rnd.nextLong() >>> 1) {
+        }
+        return r;
+    }
+
+    private static BigInteger nextBig(Random rnd, BigInteger bound) {
+        BigInteger r;
+        do {
+            r = new BigInteger(bound.bitLength(), rnd);
+        } while (r.compareTo(bound) >= 0);
+        return r;
+    }
+}
@@ -0,0 +1,229 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Finds how close an input is to a compiled DFA's language: the fewest
+ * single-character insertions, deletions and substitutions that turn the
+ * input into an accepted string, up to a bound.
+ *
+ * The matcher walks the product of the DFA with the input positions
+ * lazily, one column per input character. A column holds, for each DFA
+ * state, the fewest edits that turn the input read so far into a string
+ * leading to that state; only states within the bound are kept. Moving to
+ * the next column applies deletions and substitutions, then insertions are
+ * closed within the column with one bucket per distance, since each costs
+ * exactly one edit. A state is dropped as soon as its distance plus the
+ * insertions it would still need to reach a final state exceeds the bound,
+ * which also drops every dead state. Work is proportional to the input
+ * length times the product states kept, times the alphabet size.
+ *
+ * All buffers are allocated up front and reused; distances are invalidated
+ * by generation stamps instead of clearing. Instances are therefore not
+ * thread-safe; use one per thread.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class ApproximateMatcher {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final DFATable table;
+    private final int k;
+    // Fewest transitions from each state to a final state, or INF if none is reachable
+    private final int[] toFinal;
+
+    // Two columns, used alternately: distance, stamp and list of the states they hold
+    private final int[][] dist = new int[2][];
+    private final int[][] stamp = new int[2][];
+    private final int[][] members = new int[2][];
+    private final int[] size = new int[2];
+    private int gen;
+
+    // Insertion closure: one growable queue per distance
+    private int[][] buckets = new int[0][];
+    private int[] bucketSize = new int[0];
+
+    // Bound used by relax for the column being filled
+    private int limit;
+    private int remaining;
+
+    /**
+     * Prepares a matcher for a compiled DFA.
+     *
+     * @param table The compiled DFA.
+     */
+    public ApproximateMatcher(DFATable table) {
+        this.table = table;
+        int n = table.getStateCount();
+        this.k = table.getSymbolCount();
+        for (int c = 0; c < 2; c++) {
+            dist[c] = new int[n];
+            stamp[c] = new int[n];
+            members[c] = new int[n];
+        }
+
+        int[] predStart = new int[n + 1];
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) predStart[to + 1]++;
+            }
+        }
+        for (int q = 0; q < n; q++) predStart[q + 1] += predStart[q];
+        int[] preds = new int[predStart[n]];
+        int[] fill = Arrays.copyOf(predStart, n);
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) preds[fill[to]++] = q;
+            }
+        }
+        toFinal = new int[n];
+        Arrays.fill(toFinal, INF);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int q = 0; q < n; q++) {
+            if (table.isFinal(q)) {
+                toFinal[q] = 0;
+                queue[tail++] = q;
+            }
+        }
+        while (head < tail) {
+            int q = queue[head++];
+            for (int i = predStart[q]; i < predStart[q + 1]; i++) {
+                int p = preds[i];
+                if (toFinal[p] == INF) {
+                    toFinal[p] = toFinal[q] + 1;
+                    queue[tail++] = p;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the edit distance from an input to the DFA's language, if it is within a bound.
+     *
+     * @param s The input.
+     * @param maxEdits The most edits allowed.
+     * @return The fewest edits that turn s into an accepted string, or -1 if more than maxEdits are needed.
+     * @throws IllegalArgumentException if maxEdits is negative.
+     */
+    public int acceptsWithin(CharSequence s, int maxEdits) {
+        if (maxEdits < 0) throw new IllegalArgumentException("maxEdits must not be negative: " + maxEdits);
+        int start = table.getStartState();
+        if (start == DFATable.NONE) return -1;
+        if (buckets.length <= maxEdits) {
+            buckets = Arrays.copyOf(buckets, maxEdits + 1);
+            bucketSize = new int[maxEdits + 1];
+            for (int d = 0; d < buckets.length; d++) {
+                if (buckets[d] == null) buckets[d] = new int[16];
+            }
+        }
+        limit = maxEdits;
+        int n = s.length();
+
+        int cur = 0;
+        nextGeneration(cur);
+        remaining = n;
+        relax(cur, start, 0);
+        closeInsertions(cur);
+        for (int i = 0; i < n; i++) {
+            if (size[cur] == 0) return -1;
+            int nxt = 1 - cur;
+            nextGeneration(nxt);
+            remaining = n - i - 1;
+            int c = table.symbolIndex(s.charAt(i));
+            int[] curDist = dist[cur];
+            int[] curMembers = members[cur];
+            for (int j = 0, m = size[cur]; j < m; j++) {
+                int q = curMembers[j];
+                int d = curDist[q];
+                // delete s[i]
+                relax(nxt, q, d + 1);
+                // read s[i] as itself or as a substitute
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    if (to != DFATable.NONE) relax(nxt, to, a == c ? d : d + 1);
+                }
+            }
+            closeInsertions(nxt);
+            cur = nxt;
+        }
+
+        int best = INF;
+        int[] curDist = dist[cur];
+        int[] curMembers = members[cur];
+        for (int j = 0, m = size[cur]; j < m; j++) {
+            int q = curMembers[j];
+            if (table.isFinal(q) && curDist[q] < best) best = curDist[q];
+        }
+        return best <= maxEdits ? best : -1;
+    }
+
+    /**
+     * Returns whether an input is within a number of edits of the DFA's language.
+     *
+     * @param s The input.
+     * @param maxEdits The most edits allowed.
+     * @return true if at most maxEdits edits turn s into an accepted string, false otherwise.
+     */
+    public boolean matches(CharSequence s, int maxEdits) {
+        return acceptsWithin(s, maxEdits) >= 0;
+    }
+
+    private void nextGeneration(int column) {
+        if (++gen == INF) {
+            Arrays.fill(stamp[0], 0);
+            Arrays.fill(stamp[1], 0);
+            gen = 1;
+        }
+        size[column] = 0;
+    }
+
+    /**
+     * Lowers the distance of a state in a column, queueing it for the insertion closure.
+     */
+    private void relax(int column, int q, int d) {
+        int need = toFinal[q];
+        if (need == INF || d + Math.max(0, need - remaining) > limit) return;
+        int[] colStamp = stamp[column];
+        int[] colDist = dist[column];
+        if (colStamp[q] != gen) {
+            colStamp[q] = gen;
+            colDist[q] = d;
+            members[column][size[column]++] = q;
+        } else if (d < colDist[q]) {
+            colDist[q] = d;
+        } else {
+            return;
+        }
+        push(d, q);
+    }
+
+    private void push(int d, int q) {
+        int[] bucket = buckets[d];
+        if (bucketSize[d] == bucket.length) buckets[d] = bucket = Arrays.copyOf(bucket, bucket.length * 2);
+        bucket[bucketSize[d]++] = q;
+    }
+
+    /**
+     * Applies insertions within a column in order of distance. Each insertion
+     * costs one edit, so a state taken from bucket d only feeds bucket d + 1.
+     */
+    private void closeInsertions(int column) {
+        int[] colDist = dist[column];
+        for (int d = 0; d <= limit; d++) {
+            for (int i = 0; i < bucketSize[d]; i++) {
+                int q = buckets[d][i];
+                if (colDist[q] != d || d == limit) continue;
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    if (to != DFATable.NONE) relax(column, to, d + 1);
+                }
+            }
+            bucketSize[d] = 0;
+        }
+    }
+}
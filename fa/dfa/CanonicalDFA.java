@@ -0,0 +1,433 @@
+package fa.dfa;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The canonical form of a DFA's language. Two DFAs accept the same
+ * language exactly when their canonical forms are equal, whatever their
+ * state names, insertion order, unreachable or dead states and unused
+ * symbols.
+ *
+ * The form is built by dropping states that are unreachable or cannot
+ * reach a final state, minimizing what is left with Hopcroft's partition
+ * refinement, dropping symbols with no remaining transition, and numbering
+ * the states in breadth-first order from the start state with the symbols
+ * taken in ascending order. The result is held as a {@link DFATable} whose states
+ * are named q0, q1, ... in that order, and identified by a SHA-256 hash
+ * of the table.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class CanonicalDFA {
+
+    // Bytes handed to the digest per update
+    private static final int DIGEST_CHUNK = 1 << 16;
+
+    private final DFATable table;
+    private final byte[] hash;
+    private final int hashCode;
+
+    private CanonicalDFA(DFATable table) {
+        this.table = table;
+        this.hash = digest(table);
+        this.hashCode = (hash[0] & 0xFF) << 24 | (hash[1] & 0xFF) << 16 | (hash[2] & 0xFF) << 8 | hash[3] & 0xFF;
+    }
+
+    /**
+     * Computes the canonical form of a DFA.
+     *
+     * @param dfa The DFA.
+     * @return The canonical form.
+     */
+    public static CanonicalDFA of(DFA dfa) {
+        return of(DFATable.compile(dfa));
+    }
+
+    /**
+     * Computes the canonical form of a compiled DFA.
+     *
+     * @param table The compiled DFA.
+     * @return The canonical form.
+     */
+    public static CanonicalDFA of(DFATable table) {
+        return DFAEvents.compile("CanonicalDFA.of", () -> canonicalize(table));
+    }
+
+    private static CanonicalDFA canonicalize(DFATable table) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        int start = table.getStartState();
+
+        // Keep the states that are reachable from the start and can reach a final state
+        boolean[] reachable = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        if (start != DFATable.NONE) {
+            reachable[start] = true;
+            queue[tail++] = start;
+        }
+        while (head < tail) {
+            int q = queue[head++];
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE && !reachable[to]) {
+                    reachable[to] = true;
+                    queue[tail++] = to;
+                }
+            }
+        }
+        int[] predCount = new int[n + 1];
+        for (int q = 0; q < n; q++) {
+            if (!reachable[q]) continue;
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) predCount[to + 1]++;
+            }
+        }
+        for (int q = 0; q < n; q++) predCount[q + 1] += predCount[q];
+        int[] preds = new int[predCount[n]];
+        int[] fill = Arrays.copyOf(predCount, n);
+        for (int q = 0; q < n; q++) {
+            if (!reachable[q]) continue;
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                if (to != DFATable.NONE) preds[fill[to]++] = q;
+            }
+        }
+        boolean[] live = new boolean[n];
+        head = 0;
+        tail = 0;
+        for (int q = 0; q < n; q++) {
+            if (reachable[q] && table.isFinal(q)) {
+                live[q] = true;
+                queue[tail++] = q;
+            }
+        }
+        while (head < tail) {
+            int q = queue[head++];
+            for (int i = predCount[q]; i < predCount[q + 1]; i++) {
+                int p = preds[i];
+                if (!live[p]) {
+                    live[p] = true;
+                    queue[tail++] = p;
+                }
+            }
+        }
+        if (start == DFATable.NONE || !live[start]) {
+            return new CanonicalDFA(new DFATable(new char[0], new int[0], new boolean[0], DFATable.NONE, new String[0]));
+        }
+
+        int[] block = refine(table, live);
+        int blocks = 0;
+        for (int q = 0; q < n; q++) {
+            if (live[q]) blocks = Math.max(blocks, block[q] + 1);
+        }
+
+        // One representative per block, then breadth-first numbering with ascending symbols
+        int[] rep = new int[blocks];
+        Arrays.fill(rep, DFATable.NONE);
+        for (int q = 0; q < n; q++) {
+            if (live[q] && rep[block[q]] == DFATable.NONE) rep[block[q]] = q;
+        }
+        Integer[] bySymbol = new Integer[k];
+        for (int a = 0; a < k; a++) bySymbol[a] = a;
+        Arrays.sort(bySymbol, (x, y) -> Character.compare(table.getSymbol(x), table.getSymbol(y)));
+
+        int[] number = new int[blocks];
+        Arrays.fill(number, DFATable.NONE);
+        int[] order = new int[blocks];
+        int count = 0;
+        boolean[] used = new boolean[k];
+        number[block[start]] = count;
+        order[count++] = block[start];
+        ArrayDeque<Integer> bfs = new ArrayDeque<>();
+        bfs.add(block[start]);
+        while (!bfs.isEmpty()) {
+            int b = bfs.poll();
+            for (int a : bySymbol) {
+                int to = table.next(rep[b], a);
+                if (to == DFATable.NONE || !live[to]) continue;
+                used[a] = true;
+                int tb = block[to];
+                if (number[tb] == DFATable.NONE) {
+                    number[tb] = count;
+                    order[count++] = tb;
+                    bfs.add(tb);
+                }
+            }
+        }
+
+        int kept = 0;
+        for (int a = 0; a < k; a++) {
+            if (used[a]) kept++;
+        }
+        char[] symbols = new char[kept];
+        int[] column = new int[kept];
+        int j = 0;
+        for (int a : bySymbol) {
+            if (used[a]) {
+                symbols[j] = table.getSymbol(a);
+                column[j++] = a;
+            }
+        }
+        int[] delta = new int[blocks * kept];
+        boolean[] accepting = new boolean[blocks];
+        String[] names = new String[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int q = rep[order[i]];
+            accepting[i] = table.isFinal(q);
+            names[i] = "q" + i;
+            for (int c = 0; c < kept; c++) {
+                int to = table.next(q, column[c]);
+                delta[i * kept + c] = to == DFATable.NONE || !live[to] ? DFATable.NONE : number[block[to]];
+            }
+        }
+        return new CanonicalDFA(new DFATable(symbols, delta, accepting, 0, names));
+    }
+
+    /**
+     * Groups the live states into blocks of equivalent states with Hopcroft's
+     * partition refinement, in O(n*|Sigma|*log n) time. Missing transitions
+     * and transitions to dead states all go to one added sink state, which
+     * makes the automaton complete; the sink is never equivalent to a live
+     * state and gets no block of its own in the result.
+     *
+     * @return The block of each live state, numbered from 0, or NONE for other states.
+     */
+    private static int[] refine(DFATable table, boolean[] live) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        int[] id = new int[n];
+        int m = 0;
+        for (int q = 0; q < n; q++) id[q] = live[q] ? m++ : DFATable.NONE;
+        int sink = m;
+        int size = m + 1;
+
+        // Predecessors of each state on each symbol, grouped by (symbol, target)
+        int[] predStart = new int[Math.addExact(Math.multiplyExact(size, k), 1)];
+        int[] target = new int[Math.multiplyExact(size, k)];
+        for (int q = 0; q < n; q++) {
+            if (!live[q]) continue;
+            for (int a = 0; a < k; a++) {
+                int to = table.next(q, a);
+                target[id[q] * k + a] = to == DFATable.NONE || !live[to] ? sink : id[to];
+            }
+        }
+        for (int a = 0; a < k; a++) target[sink * k + a] = sink;
+        for (int p = 0; p < size; p++) {
+            for (int a = 0; a < k; a++) predStart[a * size + target[p * k + a] + 1]++;
+        }
+        for (int i = 0; i < size * k; i++) predStart[i + 1] += predStart[i];
+        int[] preds = new int[size * k];
+        int[] fill = Arrays.copyOf(predStart, size * k);
+        for (int p = 0; p < size; p++) {
+            for (int a = 0; a < k; a++) preds[fill[a * size + target[p * k + a]]++] = p;
+        }
+        target = null;
+        fill = null;
+
+        // Blocks are contiguous ranges of elems; marked states are moved to the front of their block
+        int[] elems = new int[size];
+        int[] loc = new int[size];
+        int[] blockOf = new int[size];
+        int[] first = new int[size];
+        int[] end = new int[size];
+        int[] marked = new int[size];
+        int finals = 0;
+        for (int q = 0; q < n; q++) {
+            if (live[q] && table.isFinal(q)) elems[finals++] = id[q];
+        }
+        int at = finals;
+        for (int q = 0; q < n; q++) {
+            if (live[q] && !table.isFinal(q)) elems[at++] = id[q];
+        }
+        elems[at] = sink;
+        int blocks = 2;
+        first[0] = 0;
+        end[0] = finals;
+        first[1] = finals;
+        end[1] = size;
+        for (int i = 0; i < size; i++) {
+            loc[elems[i]] = i;
+            blockOf[elems[i]] = i < finals ? 0 : 1;
+        }
+
+        int[] work = new int[size];
+        boolean[] inWork = new boolean[size];
+        int pending = 0;
+        int smaller = finals <= size - finals ? 0 : 1;
+        work[pending++] = smaller;
+        inWork[smaller] = true;
+        int[] splitter = new int[size];
+        int[] touched = new int[size];
+        while (pending > 0) {
+            int s = work[--pending];
+            inWork[s] = false;
+            int count = end[s] - first[s];
+            System.arraycopy(elems, first[s], splitter, 0, count);
+            for (int a = 0; a < k; a++) {
+                int touchedCount = 0;
+                for (int i = 0; i < count; i++) {
+                    int t = splitter[i];
+                    for (int j = predStart[a * size + t]; j < predStart[a * size + t + 1]; j++) {
+                        int p = preds[j];
+                        int b = blockOf[p];
+                        if (marked[b] == 0) touched[touchedCount++] = b;
+                        int to = first[b] + marked[b]++;
+                        int other = elems[to];
+                        int from = loc[p];
+                        elems[to] = p;
+                        loc[p] = to;
+                        elems[from] = other;
+                        loc[other] = from;
+                    }
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    int b = touched[i];
+                    int hit = marked[b];
+                    marked[b] = 0;
+                    int total = end[b] - first[b];
+                    if (hit == total) continue;
+                    // The smaller part becomes the new block, so each state is relabeled O(log n) times
+                    int nb = blocks++;
+                    if (hit <= total - hit) {
+                        first[nb] = first[b];
+                        end[nb] = first[b] + hit;
+                        first[b] += hit;
+                    } else {
+                        first[nb] = first[b] + hit;
+                        end[nb] = end[b];
+                        end[b] = first[b] + hit;
+                    }
+                    for (int j = first[nb]; j < end[nb]; j++) blockOf[elems[j]] = nb;
+                    // If b is still waiting both halves will be processed; otherwise the smaller suffices
+                    work[pending++] = nb;
+                    inWork[nb] = true;
+                }
+            }
+        }
+
+        // Number the blocks of live states densely, leaving out the sink's block
+        int[] dense = new int[blocks];
+        Arrays.fill(dense, DFATable.NONE);
+        int next = 0;
+        int[] block = new int[n];
+        for (int q = 0; q < n; q++) {
+            if (!live[q]) {
+                block[q] = DFATable.NONE;
+                continue;
+            }
+            int b = blockOf[id[q]];
+            if (dense[b] == DFATable.NONE) dense[b] = next++;
+            block[q] = dense[b];
+        }
+        return block;
+    }
+
+    /**
+     * Returns the canonical table. Its states are named q0, q1, ... and q0 is the start state.
+     *
+     * @return The canonical table.
+     */
+    public DFATable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the canonical table.
+     *
+     * @return A copy of the 32-byte hash.
+     */
+    public byte[] getHash() {
+        return hash.clone();
+    }
+
+    /**
+     * Returns the SHA-256 hash of the canonical table as hex.
+     *
+     * @return The hash as 64 lowercase hex digits.
+     */
+    public String getHashHex() {
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : hash) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Two canonical forms are equal when their tables are identical, which
+     * holds exactly when the DFAs they came from accept the same language.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CanonicalDFA)) return false;
+        CanonicalDFA other = (CanonicalDFA) o;
+        if (!Arrays.equals(hash, other.hash)) return false;
+        DFATable a = table;
+        DFATable b = other.table;
+        int n = a.getStateCount();
+        int k = a.getSymbolCount();
+        if (n != b.getStateCount() || k != b.getSymbolCount() || a.getStartState() != b.getStartState()) return false;
+        for (int s = 0; s < k; s++) {
+            if (a.getSymbol(s) != b.getSymbol(s)) return false;
+        }
+        for (int q = 0; q < n; q++) {
+            if (a.isFinal(q) != b.isFinal(q)) return false;
+            for (int s = 0; s < k; s++) {
+                if (a.next(q, s) != b.next(q, s)) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CanonicalDFA[" + table.getStateCount() + " states, " + table.getSymbolCount() + " symbols, "
+                + getHashHex() + "]";
+    }
+
+    private static byte[] digest(DFATable table) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        // Fed to the digest a chunk of whole rows at a time, so no copy of the whole table is made
+        int rowBytes = Math.multiplyExact(4, k + 1);
+        byte[] buf = new byte[Math.max(DIGEST_CHUNK, Math.multiplyExact(4, k + 3))];
+        int at = putInt(buf, 0, n);
+        at = putInt(buf, at, k);
+        at = putInt(buf, at, table.getStartState());
+        for (int a = 0; a < k; a++) at = putInt(buf, at, table.getSymbol(a));
+        for (int q = 0; q < n; q++) {
+            if (at > buf.length - rowBytes) {
+                md.update(buf, 0, at);
+                at = 0;
+            }
+            at = putInt(buf, at, table.isFinal(q) ? 1 : 0);
+            for (int a = 0; a < k; a++) at = putInt(buf, at, table.next(q, a));
+        }
+        md.update(buf, 0, at);
+        return md.digest();
+    }
+
+    private static int putInt(byte[] buf, int at, int v) {
+        buf[at] = (byte) (v >>> 24);
+        buf[at + 1] = (byte) (v >>> 16);
+        buf[at + 2] = (byte) (v >>> 8);
+        buf[at + 3] = (byte) v;
+        return at + 4;
+    }
+}
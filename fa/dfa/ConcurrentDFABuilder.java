@@ -0,0 +1,212 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a DFA from many threads at once.
+ * Each state gets an int id when it is added, and its transitions are kept
+ * as a primitive row of target ids guarded by one of a fixed set of striped
+ * locks, so threads loading different parts of an automaton rarely contend
+ * and a transition costs two hash lookups and an array store. The methods
+ * return the same values as their counterparts in {@link DFA}, e.g. addState
+ * returns false for a duplicate name no matter which thread added it first.
+ *
+ * Because threads race to insert, the DFA produced by {@link #build()}
+ * orders states and symbols by their natural order rather than by insertion
+ * order, so the result is the same for every interleaving. The names are
+ * sorted once in build, and the transitions of different states are copied
+ * into the DFA in parallel. Call build only after all loader threads have
+ * finished.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class ConcurrentDFABuilder {
+
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int MAX_STRIPES = 1 << 16;
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final ConcurrentHashMap<String, Row> states = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Object[] locks;
+    private volatile String startState;
+
+    // Symbol id + 1 by character, in pages of 256 characters, 0 for a symbol not in sigma.
+    // Entries only ever change from 0 to their final value, so a reader racing addSigma
+    // sees either no symbol or the right id.
+    private final int[][] symbolPages = new int[256][];
+    private final Object symbolLock = new Object();
+    private char[] symbols = new char[8];
+    private volatile int symbolCount;
+
+    /**
+     * A state's id, final flag and transition row.
+     */
+    private static final class Row {
+        final String name;
+        final int id;
+        volatile boolean isFinal;
+        // Target id + 1 by symbol id, 0 for no transition; guarded by the row's stripe lock
+        int[] targets = NO_TARGETS;
+
+        Row(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Creates a builder with the default number of lock stripes.
+     */
+    public ConcurrentDFABuilder() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a builder with at least the given number of lock stripes,
+     * rounded up to a power of two and capped at 65536.
+     *
+     * @param stripes The minimum number of locks guarding transition rows.
+     * @throws IllegalArgumentException if stripes is not positive.
+     */
+    public ConcurrentDFABuilder(int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        int n = Math.max(1, Integer.highestOneBit(Math.min(stripes, MAX_STRIPES) - 1) << 1);
+        locks = new Object[n];
+        for (int i = 0; i < n; i++) locks[i] = new Object();
+    }
+
+    /**
+     * Adds a state.
+     *
+     * @param name The name of the state to add.
+     * @return true if the state was added, false if a state with that name already exists.
+     */
+    public boolean addState(String name) {
+        if (states.containsKey(name)) return false;
+        // A thread that loses the race leaves its id unused, which build skips over
+        return states.putIfAbsent(name, new Row(name, nextId.getAndIncrement())) == null;
+    }
+
+    /**
+     * Marks an existing state as final.
+     *
+     * @param name The name of the state to set as final.
+     * @return true if the state was set as final, false if the state does not exist.
+     */
+    public boolean setFinal(String name) {
+        Row row = states.get(name);
+        if (row == null) return false;
+        row.isFinal = true;
+        return true;
+    }
+
+    /**
+     * Sets the start state. If several threads set it, the last write wins.
+     *
+     * @param name The name of the start state.
+     * @return true if the start state was set, false if the state does not exist.
+     */
+    public boolean setStart(String name) {
+        if (!states.containsKey(name)) return false;
+        startState = name;
+        return true;
+    }
+
+    /**
+     * Adds a symbol to the input alphabet.
+     *
+     * @param symbol The symbol to add.
+     */
+    public void addSigma(char symbol) {
+        synchronized (symbolLock) {
+            if (symbolId(symbol) >= 0) return;
+            int[] page = symbolPages[symbol >>> 8];
+            if (page == null) page = symbolPages[symbol >>> 8] = new int[256];
+            int id = symbolCount;
+            if (id == symbols.length) symbols = Arrays.copyOf(symbols, id * 2);
+            symbols[id] = symbol;
+            page[symbol & 0xFF] = id + 1;
+            symbolCount = id + 1;
+        }
+    }
+
+    /**
+     * Adds a transition from one state to another on a given symbol.
+     *
+     * @param from The name of the state to transition from.
+     * @param to The name of the state to transition to.
+     * @param symbol The symbol that triggers the transition.
+     * @return true if the transition was added, false if a state or the symbol is unknown.
+     */
+    public boolean addTransition(String from, String to, char symbol) {
+        int a = symbolId(symbol);
+        if (a < 0) return false;
+        Row row = states.get(from);
+        Row target = states.get(to);
+        if (row == null || target == null) return false;
+        synchronized (lockFor(row.id)) {
+            int[] targets = row.targets;
+            if (a >= targets.length) row.targets = targets = Arrays.copyOf(targets, Math.max(a + 1, symbolCount));
+            targets[a] = target.id + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a DFA from everything added so far, with states and symbols in natural order.
+     *
+     * @return A new DFA.
+     */
+    public DFA build() {
+        char[] sigma;
+        synchronized (symbolLock) {
+            sigma = Arrays.copyOf(symbols, symbolCount);
+        }
+        Arrays.sort(sigma);
+        int k = sigma.length;
+        int[] symbolIds = new int[k];
+        for (int i = 0; i < k; i++) symbolIds[i] = symbolId(sigma[i]);
+
+        Row[] rows = states.values().toArray(new Row[0]);
+        Arrays.sort(rows, (x, y) -> x.name.compareTo(y.name));
+        int[] rank = new int[nextId.get()];
+        for (int r = 0; r < rows.length; r++) rank[rows[r].id] = r;
+
+        DFA dfa = new DFA();
+        for (char c : sigma) dfa.addSigma(c);
+        for (Row row : rows) dfa.addState(row.name);
+        String start = startState;
+        if (start != null) dfa.setStart(start);
+        for (Row row : rows) {
+            if (row.isFinal) dfa.setFinal(row.name);
+        }
+        DFAState[] built = dfa.getStates().toArray(new DFAState[0]);
+        // Every state's transitions go into its own map, so states are filled independently
+        IntStream.range(0, rows.length).parallel().forEach(r -> {
+            Row row = rows[r];
+            DFAState state = built[r];
+            synchronized (lockFor(row.id)) {
+                int[] targets = row.targets;
+                for (int i = 0; i < k; i++) {
+                    int a = symbolIds[i];
+                    if (a < targets.length && targets[a] != 0) state.addTransition(sigma[i], built[rank[targets[a] - 1]]);
+                }
+            }
+        });
+        return dfa;
+    }
+
+    // Returns the id of a symbol, or -1 if it is not in sigma
+    private int symbolId(char symbol) {
+        int[] page = symbolPages[symbol >>> 8];
+        return page == null ? -1 : page[symbol & 0xFF] - 1;
+    }
+
+    private Object lockFor(int id) {
+        return locks[id & (locks.length - 1)];
+    }
+}
@@ -1,10 +1,14 @@
 package fa.dfa;
 
 import fa.State;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Represents a Deterministic Finite Automaton (DFA).
@@ -81,6 +85,16 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean accepts(String s) {
+        DFAEvents.Accept event = new DFAEvents.Accept();
+        if (!event.isEnabled()) return run(s);
+        long startNanos = System.nanoTime();
+        event.begin();
+        boolean accepted = run(s);
+        DFAEvents.commitAccept(event, startNanos, "DFA", states.size(), s.length(), accepted);
+        return accepted;
+    }
+
+    private boolean run(String s) {
         DFAState current = startState;
         for (char c : s.toCharArray()) {
             current = current.getNextState(c);
@@ -89,6 +103,37 @@ public class DFA implements DFAInterface {
         return current.isFinal();
     }
 
+    /**
+     * Counts the strings of the given length accepted by the DFA.
+     * 
+     * @param n The string length.
+     * @return The number of accepted strings of length n.
+     * @throws ArithmeticException if the count does not fit in a long.
+     */
+    public long countAccepted(int n) {
+        return new AcceptedStrings(this, n).count();
+    }
+
+    /**
+     * Counts the strings of the given length accepted by the DFA, without overflow.
+     * 
+     * @param n The string length.
+     * @return The number of accepted strings of length n.
+     */
+    public BigInteger countAcceptedExact(int n) {
+        return new AcceptedStrings(this, n).countExact();
+    }
+
+    /**
+     * Enumerates the strings of the given length accepted by the DFA.
+     * 
+     * @param n The string length.
+     * @return A lazy stream of the accepted strings of length n.
+     */
+    public Stream<String> streamAccepted(int n) {
+        return new AcceptedStrings(this, n).stream();
+    }
+
     /**
      * Returns the input alphabet (sigma) of the DFA.
      * 
@@ -133,6 +178,24 @@ public class DFA implements DFAInterface {
         return startState != null && startState.getName().equals(name);
     }
 
+    /**
+     * Returns the start state of the DFA.
+     * 
+     * @return The start DFAState, or null if no start state has been set.
+     */
+    DFAState getStartState() {
+        return startState;
+    }
+
+    /**
+     * Returns the states of the DFA in insertion order.
+     * 
+     * @return An unmodifiable view of the states.
+     */
+    Collection<DFAState> getStates() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
     /**
      * Returns a string representation of the DFA, including the states, input alphabet,
      * transition function, start state, and final states.
@@ -141,6 +204,10 @@ public class DFA implements DFAInterface {
      */
     @Override
     public String toString() {
+        return DFAEvents.dump(this, this::render);
+    }
+
+    private String render() {
         StringBuilder sb = new StringBuilder();
         // States
         sb.append("Q = { ");
@@ -197,6 +264,10 @@ public class DFA implements DFAInterface {
      */
     @Override
     public DFA swap(char symb1, char symb2) {
+        return DFAEvents.copy("DFA.swap", () -> swapCopy(symb1, symb2));
+    }
+
+    private DFA swapCopy(char symb1, char symb2) {
         DFA swapped = new DFA();
         // Copy sigma and swap symbols
         sigma.forEach(c -> swapped.addSigma(c == symb1 ? symb2 : c == symb2 ? symb1 : c));
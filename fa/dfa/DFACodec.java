@@ -0,0 +1,159 @@
+package fa.dfa;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes compiled DFAs to a compact byte array and back.
+ * All integers are unsigned varints and transition targets are stored
+ * plus one so that missing transitions take a single zero byte.
+ *
+ * Layout: magic, symbol count, symbols, state count, start + 1, final
+ * bitmap, state names as UTF-8 (length first), then the transition rows.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class DFACodec {
+
+    private static final int MAGIC = 0xDFA1;
+
+    private DFACodec() {
+    }
+
+    /**
+     * Serializes a DFA.
+     *
+     * @param dfa The DFA.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(DFA dfa) {
+        return encode(DFATable.compile(dfa));
+    }
+
+    /**
+     * Serializes a compiled DFA.
+     *
+     * @param table The compiled DFA.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(DFATable table) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + n * (k + 4));
+        writeVarint(out, MAGIC);
+        writeVarint(out, k);
+        for (int a = 0; a < k; a++) writeVarint(out, table.getSymbol(a));
+        writeVarint(out, n);
+        writeVarint(out, table.getStartState() + 1);
+        for (int q = 0; q < n; q += 8) {
+            int bits = 0;
+            for (int j = 0; j < 8 && q + j < n; j++) {
+                if (table.isFinal(q + j)) bits |= 1 << j;
+            }
+            out.write(bits);
+        }
+        for (int q = 0; q < n; q++) {
+            byte[] name = table.getStateName(q).getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, name.length);
+            out.write(name, 0, name.length);
+        }
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) writeVarint(out, table.next(q, a) + 1);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Deserializes a compiled DFA.
+     *
+     * @param bytes Bytes produced by {@link #encode}.
+     * @return The compiled DFA.
+     * @throws IllegalArgumentException if the bytes are not a valid encoding.
+     */
+    public static DFATable decode(byte[] bytes) {
+        return DFAEvents.compile("DFACodec.decode", () -> read(bytes));
+    }
+
+    private static DFATable read(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.varint() != MAGIC) throw new IllegalArgumentException("not an encoded DFA");
+        // Every entry takes at least one byte, so no count may exceed the bytes left
+        int k = in.count(in.varint());
+        char[] symbols = new char[k];
+        long[] seen = new long[(Character.MAX_VALUE + 1) / 64];
+        for (int a = 0; a < k; a++) {
+            int symbol = in.varint();
+            if (symbol < 0 || symbol > Character.MAX_VALUE) throw new IllegalArgumentException("bad symbol " + symbol);
+            if ((seen[symbol >>> 6] & 1L << symbol) != 0) throw new IllegalArgumentException("repeated symbol " + symbol);
+            seen[symbol >>> 6] |= 1L << symbol;
+            symbols[a] = (char) symbol;
+        }
+        int n = in.count(in.varint());
+        int start = in.varint() - 1;
+        if (start < -1 || start >= n) throw new IllegalArgumentException("bad start state " + start);
+        boolean[] accepting = new boolean[n];
+        for (int q = 0; q < n; q += 8) {
+            int bits = in.u8();
+            for (int j = 0; j < 8 && q + j < n; j++) accepting[q + j] = (bits & 1 << j) != 0;
+        }
+        String[] names = new String[n];
+        for (int q = 0; q < n; q++) {
+            int length = in.varint();
+            names[q] = new String(bytes, in.skip(length), length, StandardCharsets.UTF_8);
+        }
+        int[] delta = new int[in.count((long) n * k)];
+        for (int i = 0; i < delta.length; i++) {
+            int to = in.varint() - 1;
+            if (to < -1 || to >= n) throw new IllegalArgumentException("bad transition target " + to);
+            delta[i] = to;
+        }
+        return new DFATable(symbols, delta, accepting, start, names);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads varints from a byte array, failing with IllegalArgumentException on truncation.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int at;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int u8() {
+            if (at >= bytes.length) throw new IllegalArgumentException("truncated DFA encoding");
+            return bytes[at++] & 0xFF;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = u8();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        int count(long count) {
+            if (count < 0 || count > bytes.length - at) throw new IllegalArgumentException("bad count " + count);
+            return (int) count;
+        }
+
+        int skip(int length) {
+            if (length < 0 || length > bytes.length - at) throw new IllegalArgumentException("truncated DFA encoding");
+            int from = at;
+            at += length;
+            return from;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package fa.dfa;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for automaton work, so that latency spikes in a
+ * recording can be matched to compiles, copies, dumps and slow runs.
+ * Every event is disabled by default; enable them by name in a recording
+ * or a .jfc file, e.g. {@code fa.dfa.Compile#enabled=true}. While disabled,
+ * instrumented methods only pay for one {@link Event#isEnabled()} check.
+ *
+ * Compile, copy and dump events carry the state and transition counts of
+ * the result and, where the JVM supports it, the bytes the thread allocated
+ * during the operation. Accept events are recorded only for runs whose
+ * input is at least {@link #getAcceptMinLength()} characters long or that
+ * take at least {@link #getAcceptMinNanos()} nanoseconds; both thresholds
+ * can also be set with the system properties {@code fa.dfa.jfr.acceptMinLength}
+ * and {@code fa.dfa.jfr.acceptMinNanos}.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class DFAEvents {
+
+    private static volatile int acceptMinLength = Integer.getInteger("fa.dfa.jfr.acceptMinLength", 1 << 20);
+    private static volatile long acceptMinNanos = Long.getLong("fa.dfa.jfr.acceptMinNanos", 10_000_000L);
+
+    private DFAEvents() {
+    }
+
+    /**
+     * Building an automaton or a compiled form of one.
+     */
+    @Name("fa.dfa.Compile")
+    @Label("Automaton Compile")
+    @Category({ "Finite Automata" })
+    @Description("Construction of a DFA, compiled table or other engine")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Compile extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("States")
+        int states;
+        @Label("Transitions")
+        long transitions;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /**
+     * Copying an automaton into a new one.
+     */
+    @Name("fa.dfa.Copy")
+    @Label("Automaton Copy")
+    @Category({ "Finite Automata" })
+    @Description("A whole-automaton copy such as swap or renumber")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Copy extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("States")
+        int states;
+        @Label("Transitions")
+        long transitions;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /**
+     * Rendering an automaton as text.
+     */
+    @Name("fa.dfa.Dump")
+    @Label("Automaton Dump")
+    @Category({ "Finite Automata" })
+    @Description("Rendering an automaton with toString")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Dump extends Event {
+        @Label("States")
+        int states;
+        @Label("Transitions")
+        long transitions;
+        @Label("Characters")
+        int characters;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /**
+     * A run over an input that was long or slow.
+     */
+    @Name("fa.dfa.Accept")
+    @Label("Slow Acceptance")
+    @Category({ "Finite Automata" })
+    @Description("An accepts call over the configured length or duration threshold")
+    @Enabled(false)
+    public static final class Accept extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("States")
+        int states;
+        @Label("Input Length")
+        int length;
+        @Label("Accepted")
+        boolean accepted;
+    }
+
+    /**
+     * Returns the input length from which accept events are recorded.
+     *
+     * @return The length threshold.
+     */
+    public static int getAcceptMinLength() {
+        return acceptMinLength;
+    }
+
+    /**
+     * Sets the input length from which accept events are recorded.
+     *
+     * @param length The length threshold.
+     */
+    public static void setAcceptMinLength(int length) {
+        acceptMinLength = length;
+    }
+
+    /**
+     * Returns the duration from which accept events are recorded.
+     *
+     * @return The duration threshold in nanoseconds.
+     */
+    public static long getAcceptMinNanos() {
+        return acceptMinNanos;
+    }
+
+    /**
+     * Sets the duration from which accept events are recorded.
+     *
+     * @param nanos The duration threshold in nanoseconds.
+     */
+    public static void setAcceptMinNanos(long nanos) {
+        acceptMinNanos = nanos;
+    }
+
+    /**
+     * Runs a construction, recording a compile event for its result if enabled.
+     */
+    static <T> T compile(String operation, Supplier<T> work) {
+        Compile event = new Compile();
+        if (!event.isEnabled()) return work.get();
+        long before = allocatedBytes();
+        event.begin();
+        T result = work.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.states = stateCount(result);
+            event.transitions = transitionCount(result);
+            event.allocated = allocatedBytes() - before;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Runs a copy, recording a copy event for its result if enabled.
+     */
+    static <T> T copy(String operation, Supplier<T> work) {
+        Copy event = new Copy();
+        if (!event.isEnabled()) return work.get();
+        long before = allocatedBytes();
+        event.begin();
+        T result = work.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.states = stateCount(result);
+            event.transitions = transitionCount(result);
+            event.allocated = allocatedBytes() - before;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Renders a DFA, recording a dump event if enabled.
+     */
+    static String dump(DFA dfa, Supplier<String> render) {
+        Dump event = new Dump();
+        if (!event.isEnabled()) return render.get();
+        long before = allocatedBytes();
+        event.begin();
+        String text = render.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.states = dfa.getStates().size();
+            event.transitions = transitionCount(dfa);
+            event.characters = text.length();
+            event.allocated = allocatedBytes() - before;
+            event.commit();
+        }
+        return text;
+    }
+
+    /**
+     * Commits an accept event that was begun before the run, if it passes a threshold.
+     */
+    static void commitAccept(Accept event, long startNanos, String engine, int states, int length, boolean accepted) {
+        event.end();
+        if (length < acceptMinLength && System.nanoTime() - startNanos < acceptMinNanos) return;
+        if (!event.shouldCommit()) return;
+        event.engine = engine;
+        event.states = states;
+        event.length = length;
+        event.accepted = accepted;
+        event.commit();
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or 0 if the JVM does not track them.
+     */
+    static long allocatedBytes() {
+        return Allocation.BEAN == null ? 0 : Allocation.BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    private static int stateCount(Object automaton) {
+        if (automaton instanceof DFATable) return ((DFATable) automaton).getStateCount();
+        if (automaton instanceof DFA) return ((DFA) automaton).getStates().size();
+        if (automaton instanceof CanonicalDFA) return ((CanonicalDFA) automaton).getTable().getStateCount();
+        return 0;
+    }
+
+    private static long transitionCount(Object automaton) {
+        if (automaton instanceof DFATable) return transitionCount((DFATable) automaton);
+        if (automaton instanceof DFA) return transitionCount((DFA) automaton);
+        if (automaton instanceof CanonicalDFA) return transitionCount(((CanonicalDFA) automaton).getTable());
+        return 0;
+    }
+
+    /**
+     * Counts the transitions of a compiled table.
+     */
+    static long transitionCount(DFATable table) {
+        long count = 0;
+        for (int q = 0, n = table.getStateCount(); q < n; q++) {
+            for (int a = 0, k = table.getSymbolCount(); a < k; a++) {
+                if (table.next(q, a) != DFATable.NONE) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the transitions of a DFA.
+     */
+    static long transitionCount(DFA dfa) {
+        long count = 0;
+        for (DFAState s : dfa.getStates()) {
+            for (char c : dfa.getSigma()) {
+                if (s.getNextState(c) != null) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Holds the allocation counter, loaded only once an event is enabled.
+     */
+    private static final class Allocation {
+        static final com.sun.management.ThreadMXBean BEAN = lookup();
+
+        private static com.sun.management.ThreadMXBean lookup() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            return sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled() ? sunBean : null;
+        }
+    }
+}
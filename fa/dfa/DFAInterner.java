@@ -0,0 +1,76 @@
+package fa.dfa;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares one compiled table between all DFAs that accept the same language.
+ * Each DFA is reduced to its {@link CanonicalDFA}; the first automaton of a
+ * language stores its canonical table and later ones get that same
+ * instance back. Memory therefore grows with the number of distinct
+ * languages, not the number of automata interned. Thread-safe.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class DFAInterner {
+
+    private final ConcurrentHashMap<CanonicalDFA, CanonicalDFA> pool = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Returns the shared table for a DFA's language.
+     *
+     * @param dfa The DFA.
+     * @return The canonical table, named as described in {@link CanonicalDFA}.
+     */
+    public DFATable intern(DFA dfa) {
+        return internCanonical(CanonicalDFA.of(dfa)).getTable();
+    }
+
+    /**
+     * Returns the shared table for a compiled DFA's language.
+     *
+     * @param table The compiled DFA.
+     * @return The canonical table, named as described in {@link CanonicalDFA}.
+     */
+    public DFATable intern(DFATable table) {
+        return internCanonical(CanonicalDFA.of(table)).getTable();
+    }
+
+    /**
+     * Returns the shared instance equal to a canonical form, adding it if there is none.
+     *
+     * @param canonical The canonical form.
+     * @return The shared instance.
+     */
+    public CanonicalDFA internCanonical(CanonicalDFA canonical) {
+        requests.increment();
+        CanonicalDFA shared = pool.putIfAbsent(canonical, canonical);
+        return shared == null ? canonical : shared;
+    }
+
+    /**
+     * Returns the number of distinct languages interned.
+     *
+     * @return The pool size.
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of intern calls so far.
+     *
+     * @return The request count.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Removes all shared tables.
+     */
+    public void clear() {
+        pool.clear();
+    }
+}
@@ -0,0 +1,284 @@
+package fa.dfa;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many automata under a memory budget.
+ * Every registered automaton is kept in its compact encoded form
+ * ({@link DFACodec}); the compiled {@link DFATable} is built on first use
+ * and cached. Cached tables are evicted least recently used first whenever
+ * their combined size exceeds the budget, and a table larger than the whole
+ * budget is handed out without being cached.
+ *
+ * Concurrent misses on the same id share one load, so a burst of requests
+ * for a cold automaton decodes it once. All methods are thread-safe.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class DFARegistry {
+
+    private final long budgetBytes;
+    private final ConcurrentHashMap<String, byte[]> cold = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<DFATable>> loading = new ConcurrentHashMap<>();
+
+    // Guarded by itself
+    private final LinkedHashMap<String, Hot> hot = new LinkedHashMap<>(16, 0.75f, true);
+    private long hotBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A cached table with its estimated size.
+     */
+    private static final class Hot {
+        final DFATable table;
+        final long bytes;
+
+        Hot(DFATable table, long bytes) {
+            this.table = table;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A point-in-time copy of the registry counters.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long evictions;
+        private final int registered;
+        private final int cached;
+        private final long cachedBytes;
+        private final long coldBytes;
+
+        private Stats(long hits, long misses, long loads, long evictions, int registered, int cached,
+                long cachedBytes, long coldBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.evictions = evictions;
+            this.registered = registered;
+            this.cached = cached;
+            this.cachedBytes = cachedBytes;
+            this.coldBytes = coldBytes;
+        }
+
+        /** @return Lookups served from the cache. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** @return Lookups that did not find a cached table. */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** @return Tables decoded; lower than misses when concurrent misses share a load. */
+        public long getLoads() {
+            return loads;
+        }
+
+        /** @return Tables evicted to stay within the budget. */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** @return Automata registered. */
+        public int getRegistered() {
+            return registered;
+        }
+
+        /** @return Tables currently cached. */
+        public int getCached() {
+            return cached;
+        }
+
+        /** @return Estimated size of the cached tables. */
+        public long getCachedBytes() {
+            return cachedBytes;
+        }
+
+        /** @return Size of all encoded automata. */
+        public long getColdBytes() {
+            return coldBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " loads=" + loads + " evictions=" + evictions
+                    + " registered=" + registered + " cached=" + cached + " cachedBytes=" + cachedBytes
+                    + " coldBytes=" + coldBytes;
+        }
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param budgetBytes The most memory the cached tables may use, by estimate.
+     * @throws IllegalArgumentException if the budget is negative.
+     */
+    public DFARegistry(long budgetBytes) {
+        if (budgetBytes < 0) throw new IllegalArgumentException("budget must not be negative: " + budgetBytes);
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Registers or replaces an automaton.
+     *
+     * @param id The automaton id.
+     * @param dfa The automaton.
+     */
+    public void register(String id, DFA dfa) {
+        registerEncoded(id, DFACodec.encode(dfa));
+    }
+
+    /**
+     * Registers or replaces an automaton given in encoded form.
+     *
+     * @param id The automaton id.
+     * @param encoded Bytes produced by {@link DFACodec#encode}.
+     */
+    public void registerEncoded(String id, byte[] encoded) {
+        cold.put(id, encoded);
+        dropHot(id);
+    }
+
+    /**
+     * Removes an automaton.
+     *
+     * @param id The automaton id.
+     * @return true if it was registered, false otherwise.
+     */
+    public boolean remove(String id) {
+        boolean removed = cold.remove(id) != null;
+        dropHot(id);
+        return removed;
+    }
+
+    /**
+     * Returns the compiled table of an automaton, building it if it is not cached.
+     *
+     * @param id The automaton id.
+     * @return The compiled table, or null if no automaton has that id.
+     */
+    public DFATable get(String id) {
+        synchronized (hot) {
+            Hot h = hot.get(id);
+            if (h != null) {
+                hits.increment();
+                return h.table;
+            }
+        }
+        misses.increment();
+        CompletableFuture<DFATable> mine = new CompletableFuture<>();
+        CompletableFuture<DFATable> theirs = loading.putIfAbsent(id, mine);
+        if (theirs != null) {
+            try {
+                return theirs.join();
+            } catch (CompletionException e) {
+                // Rethrow the loader's own failure rather than its wrapper
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw e;
+            }
+        }
+        try {
+            DFATable table = load(id);
+            mine.complete(table);
+            return table;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, mine);
+        }
+    }
+
+    /**
+     * Runs an automaton on an input.
+     *
+     * @param id The automaton id.
+     * @param input The input.
+     * @return true if the automaton accepts the input, false otherwise.
+     * @throws IllegalArgumentException if no automaton has that id.
+     */
+    public boolean accepts(String id, CharSequence input) {
+        DFATable table = get(id);
+        if (table == null) throw new IllegalArgumentException("no automaton registered as " + id);
+        return table.accepts(input);
+    }
+
+    /**
+     * Returns the current counters.
+     *
+     * @return A snapshot of the statistics.
+     */
+    public Stats getStats() {
+        long coldBytes = 0;
+        for (byte[] b : cold.values()) coldBytes += b.length;
+        synchronized (hot) {
+            return new Stats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), cold.size(), hot.size(),
+                    hotBytes, coldBytes);
+        }
+    }
+
+    private DFATable load(String id) {
+        synchronized (hot) {
+            // Another thread may have finished loading between our miss and taking the load
+            Hot h = hot.get(id);
+            if (h != null) return h.table;
+        }
+        byte[] encoded = cold.get(id);
+        if (encoded == null) return null;
+        DFATable table = DFACodec.decode(encoded);
+        loads.increment();
+        long bytes = weigh(table);
+        if (bytes > budgetBytes) return table;
+        synchronized (hot) {
+            // Skip caching if the automaton was replaced or removed while decoding
+            if (cold.get(id) != encoded) return table;
+            Hot previous = hot.put(id, new Hot(table, bytes));
+            if (previous != null) hotBytes -= previous.bytes;
+            hotBytes += bytes;
+            Iterator<Map.Entry<String, Hot>> it = hot.entrySet().iterator();
+            while (hotBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<String, Hot> eldest = it.next();
+                if (eldest.getKey().equals(id)) continue;
+                hotBytes -= eldest.getValue().bytes;
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return table;
+    }
+
+    private void dropHot(String id) {
+        synchronized (hot) {
+            Hot h = hot.remove(id);
+            if (h != null) hotBytes -= h.bytes;
+        }
+    }
+
+    /**
+     * Estimates the heap size of a table, including its state names.
+     */
+    private static long weigh(DFATable table) {
+        long bytes = table.footprintBytes() + 64;
+        for (int q = 0, n = table.getStateCount(); q < n; q++) {
+            bytes += 48 + table.getStateName(q).length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,300 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, compiled form of a DFA.
+ * States are numbered 0..n-1 in the DFA's insertion order and symbols
+ * 0..k-1 in sigma order; the transition function is one flat int array
+ * with row {@code state * k}, holding -1 where the DFA has no transition.
+ * Engines that run many inputs through the same automaton should work on
+ * this table instead of the DFAState object graph.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class DFATable {
+
+    /** Value stored in the table for a missing transition. */
+    public static final int NONE = -1;
+
+    private final char[] symbols;
+    private final int[] delta;
+    private final boolean[] accepting;
+    private final int start;
+    private final String[] names;
+
+    private final SymbolMap symbolMap;
+    private volatile Map<String, Integer> nameIndex;
+
+    /**
+     * Creates a table from its raw parts. The arrays are used as given, not copied.
+     */
+    DFATable(char[] symbols, int[] delta, boolean[] accepting, int start, String[] names) {
+        this.symbols = symbols;
+        this.delta = delta;
+        this.accepting = accepting;
+        this.start = start;
+        this.names = names;
+        this.symbolMap = new SymbolMap(symbols);
+    }
+
+    /**
+     * Compiles a DFA into a table. Later changes to the DFA are not reflected.
+     *
+     * @param dfa The DFA to compile.
+     * @return The compiled table.
+     * @throws ArithmeticException if the table would have more than Integer.MAX_VALUE entries.
+     */
+    public static DFATable compile(DFA dfa) {
+        return DFAEvents.compile("DFATable.compile", () -> build(dfa));
+    }
+
+    private static DFATable build(DFA dfa) {
+        char[] symbols = new char[dfa.getSigma().size()];
+        int k = 0;
+        for (char c : dfa.getSigma()) symbols[k++] = c;
+
+        int n = dfa.getStates().size();
+        Map<DFAState, Integer> index = new HashMap<>(n * 2);
+        String[] names = new String[n];
+        boolean[] accepting = new boolean[n];
+        int i = 0;
+        for (DFAState s : dfa.getStates()) {
+            index.put(s, i);
+            names[i] = s.getName();
+            accepting[i] = s.isFinal();
+            i++;
+        }
+
+        int[] delta = new int[Math.multiplyExact(n, k)];
+        i = 0;
+        for (DFAState s : dfa.getStates()) {
+            for (int a = 0; a < k; a++) {
+                DFAState to = s.getNextState(symbols[a]);
+                delta[i * k + a] = to == null ? NONE : index.get(to);
+            }
+            i++;
+        }
+        DFAState startState = dfa.getStartState();
+        return new DFATable(symbols, delta, accepting, startState == null ? NONE : index.get(startState), names);
+    }
+
+    /**
+     * Returns the number of states.
+     *
+     * @return The state count.
+     */
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+    /**
+     * Returns the number of symbols in the alphabet.
+     *
+     * @return The symbol count.
+     */
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the symbol with the given index.
+     *
+     * @param index The symbol index.
+     * @return The symbol.
+     */
+    public char getSymbol(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * Returns the index of a symbol.
+     *
+     * @param c The symbol to look up.
+     * @return The symbol index, or NONE if c is not in the alphabet.
+     */
+    public int symbolIndex(char c) {
+        return symbolMap.indexOf(c);
+    }
+
+    /**
+     * Returns the target of a transition.
+     *
+     * @param state The source state.
+     * @param symbol The symbol index.
+     * @return The target state, or NONE if there is no such transition.
+     */
+    public int next(int state, int symbol) {
+        return delta[state * symbols.length + symbol];
+    }
+
+    /**
+     * Returns the target of a transition on a character.
+     *
+     * @param state The source state.
+     * @param c The input character.
+     * @return The target state, or NONE if c is not in the alphabet or there is no such transition.
+     */
+    public int step(int state, char c) {
+        int a = symbolIndex(c);
+        return a == NONE ? NONE : delta[state * symbols.length + a];
+    }
+
+    /**
+     * Returns whether a state is final.
+     *
+     * @param state The state.
+     * @return true if the state is final, false otherwise.
+     */
+    public boolean isFinal(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * Returns the start state.
+     *
+     * @return The start state, or NONE if the DFA had no start state.
+     */
+    public int getStartState() {
+        return start;
+    }
+
+    /**
+     * Returns the name a state had in the DFA.
+     *
+     * @param state The state.
+     * @return The state name.
+     */
+    public String getStateName(int state) {
+        return names[state];
+    }
+
+    /**
+     * Returns the number of a state by name.
+     *
+     * @param name The state name.
+     * @return The state number, or NONE if no state has that name.
+     */
+    public int stateIndex(String name) {
+        Map<String, Integer> index = nameIndex;
+        if (index == null) {
+            index = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) index.put(names[i], i);
+            nameIndex = index;
+        }
+        Integer i = index.get(name);
+        return i == null ? NONE : i;
+    }
+
+    /**
+     * Runs the table on an input, with the same result as {@link DFA#accepts(String)}.
+     *
+     * @param s The input.
+     * @return true if the input is accepted, false otherwise.
+     */
+    public boolean accepts(CharSequence s) {
+        DFAEvents.Accept event = new DFAEvents.Accept();
+        if (!event.isEnabled()) return run(s);
+        long startNanos = System.nanoTime();
+        event.begin();
+        boolean accepted = run(s);
+        DFAEvents.commitAccept(event, startNanos, "DFATable", accepting.length, s.length(), accepted);
+        return accepted;
+    }
+
+    private boolean run(CharSequence s) {
+        int state = start;
+        if (state == NONE) return false;
+        int k = symbols.length;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int a = symbolIndex(s.charAt(i));
+            if (a == NONE) return false;
+            state = delta[state * k + a];
+            if (state == NONE) return false;
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Returns a copy of this table with the states renumbered.
+     *
+     * @param order The old number of each state, indexed by its new number.
+     * @return The renumbered table.
+     * @throws IllegalArgumentException if order is not a permutation of the states.
+     */
+    public DFATable renumber(int[] order) {
+        return DFAEvents.copy("DFATable.renumber", () -> permute(order));
+    }
+
+    private DFATable permute(int[] order) {
+        int n = accepting.length;
+        int k = symbols.length;
+        if (order.length != n) throw new IllegalArgumentException("order has " + order.length + " entries, expected " + n);
+        int[] newId = new int[n];
+        Arrays.fill(newId, NONE);
+        for (int i = 0; i < n; i++) {
+            if (order[i] < 0 || order[i] >= n || newId[order[i]] != NONE) {
+                throw new IllegalArgumentException("order is not a permutation at index " + i);
+            }
+            newId[order[i]] = i;
+        }
+        int[] newDelta = new int[Math.multiplyExact(n, k)];
+        boolean[] newAccepting = new boolean[n];
+        String[] newNames = new String[n];
+        for (int i = 0; i < n; i++) {
+            int old = order[i];
+            for (int a = 0; a < k; a++) {
+                int to = delta[old * k + a];
+                newDelta[i * k + a] = to == NONE ? NONE : newId[to];
+            }
+            newAccepting[i] = accepting[old];
+            newNames[i] = names[old];
+        }
+        return new DFATable(symbols, newDelta, newAccepting, start == NONE ? NONE : newId[start], newNames);
+    }
+
+    /**
+     * Returns the approximate heap size of the transition table, final flags
+     * and symbol lookup, not counting state names.
+     *
+     * @return The size in bytes.
+     */
+    public long footprintBytes() {
+        return 4L * delta.length + accepting.length + 2L * symbols.length + symbolMap.footprintBytes();
+    }
+
+    /**
+     * Rebuilds a DFA from this table, using the original state names.
+     *
+     * @return A new DFA.
+     */
+    public DFA toDFA() {
+        return DFAEvents.copy("DFATable.toDFA", this::rebuild);
+    }
+
+    /**
+     * Rebuilds a DFA like {@link #toDFA()} but without a Copy event, for
+     * callers whose own event already covers the conversion.
+     *
+     * @return A new DFA.
+     */
+    DFA rebuild() {
+        DFA dfa = new DFA();
+        for (char c : symbols) dfa.addSigma(c);
+        for (String name : names) dfa.addState(name);
+        if (start != NONE) dfa.setStart(names[start]);
+        for (int q = 0; q < names.length; q++) {
+            if (accepting[q]) dfa.setFinal(names[q]);
+        }
+        int k = symbols.length;
+        for (int q = 0; q < names.length; q++) {
+            for (int a = 0; a < k; a++) {
+                int to = delta[q * k + a];
+                if (to != NONE) dfa.addTransition(names[q], names[to], symbols[a]);
+            }
+        }
+        return dfa;
+    }
+}
@@ -0,0 +1,362 @@
+package fa.dfa;
+
+/**
+ * Re-checks acceptance of an editable document against a DFA without
+ * rescanning the whole document after every edit.
+ * While scanning, the matcher records the DFA state reached at checkpoints
+ * roughly every {@code interval} characters. After an edit at position p it
+ * resumes from the last checkpoint at or before p, and stops as soon as the
+ * state reached after the edited region equals the state recorded at an old
+ * checkpoint, since the rest of the document is unchanged from there on.
+ * The number of characters rescanned therefore depends on the edit and the
+ * checkpoint interval, not on the document length. Up to the first
+ * character the DFA rejects, checkpoints are kept fewer than 2 * interval
+ * apart, and a checkpoint closer than interval to its predecessor is always
+ * followed by a gap wider than interval, so a document of n characters
+ * holds at most about 2n / interval of them no matter how many edits it has
+ * seen.
+ *
+ * The document and the checkpoints are each held in a gap buffer positioned
+ * at the last edit. Checkpoints after the gap store their distance from the
+ * end of the document, so an edit before them shifts them without touching
+ * them. An edit therefore moves only the text and checkpoints between the
+ * previous edit and this one: a run of edits in one place costs time
+ * proportional to the edits, and an edit far from the previous one pays
+ * once for the distance between them.
+ *
+ * The DFA must not be modified while a matcher is using it.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class IncrementalMatcher {
+
+    /** Default distance between checkpoints, in characters. */
+    public static final int DEFAULT_INTERVAL = 4096;
+
+    // Largest array the VM reliably allocates
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private final DFA dfa;
+    private final int interval;
+
+    // The document is text[0, gapStart) followed by text[gapEnd, text.length).
+    private char[] text = new char[16];
+    private int gapStart;
+    private int gapEnd = 16;
+
+    // Checkpoint i records that the state before document position pos(i) is its state.
+    // Entries [0, cpFront) hold absolute positions and entries [cpBack, cpPos.length)
+    // hold positions minus the document length. Positions are strictly increasing and
+    // the first checkpoint is always at 0.
+    private int[] cpPos = new int[16];
+    private DFAState[] cpState = new DFAState[16];
+    private int cpFront;
+    private int cpBack = 16;
+
+    // Index of the character with no transition, or -1 if the whole text is consumed.
+    private int deadAt = -1;
+    private DFAState endState;
+    private int lastScanned;
+
+    /**
+     * Creates a matcher with the default checkpoint interval.
+     *
+     * @param dfa The DFA to match against.
+     */
+    public IncrementalMatcher(DFA dfa) {
+        this(dfa, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a matcher that records a checkpoint every {@code interval} characters.
+     *
+     * @param dfa The DFA to match against.
+     * @param interval The distance between checkpoints, in characters.
+     * @throws IllegalArgumentException if interval is not positive.
+     */
+    public IncrementalMatcher(DFA dfa, int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("interval must be positive: " + interval);
+        this.dfa = dfa;
+        this.interval = interval;
+        reset("");
+    }
+
+    /**
+     * Replaces the whole document and scans it from the start.
+     *
+     * @param document The new document contents.
+     * @return true if the DFA accepts the document, false otherwise.
+     */
+    public boolean reset(CharSequence document) {
+        gapStart = 0;
+        gapEnd = text.length;
+        insertText(document);
+        cpFront = 0;
+        cpBack = cpPos.length;
+        DFAState start = dfa.getStartState();
+        if (start == null) {
+            deadAt = 0;
+            endState = null;
+            lastScanned = 0;
+            return false;
+        }
+        appendCheckpoint(0, start);
+        scan(start, 0, Integer.MAX_VALUE, -1, null);
+        return accepts();
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code pos} with {@code inserted}
+     * and updates the acceptance result. Rescans at most the edited region
+     * plus the distance to the next matching checkpoint, and moves only the
+     * text and checkpoints between the previous edit and this one.
+     *
+     * @param pos The position of the edit.
+     * @param removed The number of characters removed at pos.
+     * @param inserted The characters inserted at pos.
+     * @return true if the DFA accepts the edited document, false otherwise.
+     * @throws IndexOutOfBoundsException if the edited range is outside the document.
+     */
+    public boolean replace(int pos, int removed, CharSequence inserted) {
+        int length = length();
+        if (pos < 0 || removed < 0 || pos > length - removed) {
+            throw new IndexOutOfBoundsException("pos " + pos + ", removed " + removed + ", length " + length);
+        }
+        int oldEditEnd = pos + removed;
+        lastScanned = 0;
+        if (cpFront == 0) {
+            // No start state, nothing is ever accepted
+            editText(pos, removed, inserted);
+            return false;
+        }
+
+        // Keep the checkpoints up to the edit in front of the gap, so the edit shifts
+        // only the ones after it
+        moveCheckpointGap(lastCheckpointAtOrBefore(pos, length) + 1, length);
+        if (deadAt >= 0 && deadAt < pos) {
+            // The scan already died before the edit, so the edit cannot change the result
+            editText(pos, removed, inserted);
+            return false;
+        }
+
+        // Drop the checkpoints inside the removed range since they no longer describe the document
+        while (cpBack < cpPos.length && cpPos[cpBack] + length < oldEditEnd) cpBack++;
+        editText(pos, removed, inserted);
+
+        int oldDeadAt = deadAt >= oldEditEnd ? deadAt + inserted.length() - removed : -1;
+        scan(cpState[cpFront - 1], cpPos[cpFront - 1], pos + inserted.length(), oldDeadAt, endState);
+        return accepts();
+    }
+
+    /**
+     * Inserts text into the document.
+     *
+     * @param pos The position to insert at.
+     * @param inserted The characters to insert.
+     * @return true if the DFA accepts the edited document, false otherwise.
+     */
+    public boolean insert(int pos, CharSequence inserted) {
+        return replace(pos, 0, inserted);
+    }
+
+    /**
+     * Deletes text from the document.
+     *
+     * @param pos The position of the first character to delete.
+     * @param removed The number of characters to delete.
+     * @return true if the DFA accepts the edited document, false otherwise.
+     */
+    public boolean delete(int pos, int removed) {
+        return replace(pos, removed, "");
+    }
+
+    /**
+     * Returns the acceptance result for the current document.
+     *
+     * @return true if the DFA accepts the current document, false otherwise.
+     */
+    public boolean accepts() {
+        return deadAt < 0 && endState != null && endState.isFinal();
+    }
+
+    /**
+     * Returns the current document.
+     *
+     * @return The document contents.
+     */
+    public String getDocument() {
+        return new StringBuilder(length()).append(text, 0, gapStart).append(text, gapEnd, text.length - gapEnd).toString();
+    }
+
+    /**
+     * Returns how many characters the last reset or edit fed through the DFA.
+     *
+     * @return The number of characters scanned by the last operation.
+     */
+    public int getLastScanned() {
+        return lastScanned;
+    }
+
+    /**
+     * Returns the number of checkpoints currently recorded.
+     *
+     * @return The checkpoint count.
+     */
+    public int getCheckpointCount() {
+        return cpFront + cpPos.length - cpBack;
+    }
+
+    /**
+     * Scans forward from the last checkpoint before the gap, recording new
+     * checkpoints, until the end of the text, a missing transition, or a
+     * point at or past {@code editEnd} where the state matches the old
+     * checkpoint recorded there. Old checkpoints the scan passes are dropped.
+     */
+    private void scan(DFAState state, int p, int editEnd, int oldDeadAt, DFAState oldEnd) {
+        int length = length();
+        int gap = gapEnd - gapStart;
+        int nextCheckpoint = p + interval;
+        int scanned = 0;
+        while (p < length) {
+            if (p >= editEnd) {
+                while (cpBack < cpPos.length && cpPos[cpBack] + length < p) cpBack++;
+                if (cpBack < cpPos.length && cpPos[cpBack] + length == p) {
+                    if (cpState[cpBack] == state) {
+                        // Converged with the old run, reuse everything after this point
+                        dropIfCrowded(p, length);
+                        deadAt = oldDeadAt;
+                        endState = oldDeadAt >= 0 ? null : oldEnd;
+                        lastScanned = scanned;
+                        return;
+                    }
+                    // The old run reached a different state here
+                    cpBack++;
+                }
+            }
+            if (p == nextCheckpoint) {
+                appendCheckpoint(p, state);
+                nextCheckpoint += interval;
+            }
+            state = state.getNextState(text[p < gapStart ? p : p + gap]);
+            scanned++;
+            if (state == null) {
+                deadAt = p;
+                endState = null;
+                lastScanned = scanned;
+                cpBack = cpPos.length;
+                return;
+            }
+            p++;
+        }
+        deadAt = -1;
+        endState = state;
+        lastScanned = scanned;
+        cpBack = cpPos.length;
+    }
+
+    /**
+     * Drops the old checkpoint at {@code p} that a rescan converged on when
+     * it sits closer than interval to the checkpoint before it, as long as
+     * that leaves no gap of 2 * interval or more. Without this every edit
+     * would leave one more checkpoint behind.
+     */
+    private void dropIfCrowded(int p, int length) {
+        int previous = cpPos[cpFront - 1];
+        if (p - previous >= interval) return;
+        int following = cpBack + 1 < cpPos.length ? cpPos[cpBack + 1] + length : length;
+        if (following - previous - interval < interval) cpBack++;
+    }
+
+    private int length() {
+        return text.length - (gapEnd - gapStart);
+    }
+
+    private void editText(int pos, int removed, CharSequence inserted) {
+        moveTextGap(pos);
+        gapEnd += removed;
+        insertText(inserted);
+    }
+
+    private void insertText(CharSequence inserted) {
+        int n = inserted.length();
+        if (gapEnd - gapStart < n) {
+            long needed = (long) length() + n;
+            if (needed > MAX_ARRAY) throw new OutOfMemoryError("document too large: " + needed + " characters");
+            char[] grown = new char[(int) Math.min(Math.max(needed, 2L * text.length), MAX_ARRAY)];
+            int after = text.length - gapEnd;
+            System.arraycopy(text, 0, grown, 0, gapStart);
+            System.arraycopy(text, gapEnd, grown, grown.length - after, after);
+            text = grown;
+            gapEnd = grown.length - after;
+        }
+        for (int i = 0; i < n; i++) text[gapStart + i] = inserted.charAt(i);
+        gapStart += n;
+    }
+
+    private void moveTextGap(int pos) {
+        if (pos < gapStart) {
+            int n = gapStart - pos;
+            System.arraycopy(text, pos, text, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        } else if (pos > gapStart) {
+            int n = pos - gapStart;
+            System.arraycopy(text, gapEnd, text, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private int checkpointPos(int i, int length) {
+        return i < cpFront ? cpPos[i] : cpPos[i - cpFront + cpBack] + length;
+    }
+
+    private int lastCheckpointAtOrBefore(int pos, int length) {
+        int lo = 0;
+        int hi = getCheckpointCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (checkpointPos(mid, length) <= pos) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Moves the checkpoint gap so that exactly the first front checkpoints precede it
+    private void moveCheckpointGap(int front, int length) {
+        while (cpFront > front) {
+            cpFront--;
+            cpBack--;
+            cpPos[cpBack] = cpPos[cpFront] - length;
+            cpState[cpBack] = cpState[cpFront];
+        }
+        while (cpFront < front) {
+            cpPos[cpFront] = cpPos[cpBack] + length;
+            cpState[cpFront] = cpState[cpBack];
+            cpFront++;
+            cpBack++;
+        }
+    }
+
+    private void appendCheckpoint(int pos, DFAState state) {
+        if (cpFront == cpBack) {
+            int capacity = Math.max(16, Math.multiplyExact(cpPos.length, 2));
+            int after = cpPos.length - cpBack;
+            int[] grownPos = new int[capacity];
+            DFAState[] grownState = new DFAState[capacity];
+            System.arraycopy(cpPos, 0, grownPos, 0, cpFront);
+            System.arraycopy(cpState, 0, grownState, 0, cpFront);
+            System.arraycopy(cpPos, cpBack, grownPos, capacity - after, after);
+            System.arraycopy(cpState, cpBack, grownState, capacity - after, after);
+            cpPos = grownPos;
+            cpState = grownState;
+            cpBack = capacity - after;
+        }
+        cpPos[cpFront] = pos;
+        cpState[cpFront] = state;
+        cpFront++;
+    }
+}
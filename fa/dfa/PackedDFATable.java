@@ -0,0 +1,141 @@
+package fa.dfa;
+
+/**
+ * A compiled DFA whose transition ids use the narrowest width that fits:
+ * one byte per entry for up to 255 states, two bytes for up to 65535,
+ * otherwise four. The all-ones value of the width marks a missing
+ * transition. Together with {@link StateLayout} this keeps hot rows small
+ * and close together.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class PackedDFATable {
+
+    private final int width;
+    private final byte[] delta8;
+    private final short[] delta16;
+    private final int[] delta32;
+    private final int symbolCount;
+    private final boolean[] accepting;
+    private final int start;
+    private final SymbolMap symbolMap;
+
+    private PackedDFATable(int width, byte[] delta8, short[] delta16, int[] delta32, int symbolCount,
+            boolean[] accepting, int start, SymbolMap symbolMap) {
+        this.width = width;
+        this.delta8 = delta8;
+        this.delta16 = delta16;
+        this.delta32 = delta32;
+        this.symbolCount = symbolCount;
+        this.accepting = accepting;
+        this.start = start;
+        this.symbolMap = symbolMap;
+    }
+
+    /**
+     * Packs a table, keeping its state numbering.
+     *
+     * @param table The table to pack.
+     * @return The packed table.
+     */
+    public static PackedDFATable pack(DFATable table) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        char[] symbols = new char[k];
+        for (int a = 0; a < k; a++) symbols[a] = table.getSymbol(a);
+        boolean[] accepting = new boolean[n];
+        for (int q = 0; q < n; q++) accepting[q] = table.isFinal(q);
+        SymbolMap symbolMap = new SymbolMap(symbols);
+
+        if (n <= 0xFF) {
+            byte[] d = new byte[n * k];
+            for (int q = 0; q < n; q++) {
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    d[q * k + a] = (byte) (to == DFATable.NONE ? 0xFF : to);
+                }
+            }
+            return new PackedDFATable(1, d, null, null, k, accepting, table.getStartState(), symbolMap);
+        }
+        if (n <= 0xFFFF) {
+            short[] d = new short[n * k];
+            for (int q = 0; q < n; q++) {
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    d[q * k + a] = (short) (to == DFATable.NONE ? 0xFFFF : to);
+                }
+            }
+            return new PackedDFATable(2, null, d, null, k, accepting, table.getStartState(), symbolMap);
+        }
+        int[] d = new int[n * k];
+        for (int q = 0; q < n; q++) {
+            for (int a = 0; a < k; a++) d[q * k + a] = table.next(q, a);
+        }
+        return new PackedDFATable(4, null, null, d, k, accepting, table.getStartState(), symbolMap);
+    }
+
+    /**
+     * Returns the size of one transition entry.
+     *
+     * @return 1, 2 or 4 bytes.
+     */
+    public int getEntryWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of states.
+     *
+     * @return The state count.
+     */
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+    /**
+     * Returns the approximate heap size of the transition table, final flags
+     * and symbol lookup.
+     *
+     * @return The size in bytes.
+     */
+    public long footprintBytes() {
+        return (long) width * accepting.length * symbolCount + accepting.length + symbolMap.footprintBytes();
+    }
+
+    /**
+     * Runs the table on an input, with the same result as {@link DFATable#accepts(CharSequence)}.
+     *
+     * @param s The input.
+     * @return true if the input is accepted, false otherwise.
+     */
+    public boolean accepts(CharSequence s) {
+        int state = start;
+        if (state == DFATable.NONE) return false;
+        int k = symbolCount;
+        int n = s.length();
+        // One loop per width keeps each loop monomorphic
+        if (width == 1) {
+            for (int i = 0; i < n; i++) {
+                int a = symbolMap.indexOf(s.charAt(i));
+                if (a == DFATable.NONE) return false;
+                state = delta8[state * k + a] & 0xFF;
+                if (state == 0xFF) return false;
+            }
+        } else if (width == 2) {
+            for (int i = 0; i < n; i++) {
+                int a = symbolMap.indexOf(s.charAt(i));
+                if (a == DFATable.NONE) return false;
+                state = delta16[state * k + a] & 0xFFFF;
+                if (state == 0xFFFF) return false;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                int a = symbolMap.indexOf(s.charAt(i));
+                if (a == DFATable.NONE) return false;
+                state = delta32[state * k + a];
+                if (state == DFATable.NONE) return false;
+            }
+        }
+        return accepting[state];
+    }
+}
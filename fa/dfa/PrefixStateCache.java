@@ -0,0 +1,269 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs a compiled DFA with a cache of the states reached after common
+ * input prefixes. Prefixes are cut into blocks of a fixed size and kept as
+ * a trie: each cached node holds the state reached after its prefix and is
+ * found by hashing its parent node and its own block of characters. A run
+ * follows the cached blocks of its input as deep as they go, checking each
+ * block against the stored characters, and steps the DFA only from there.
+ *
+ * A run may add at most one node, one block below the deepest node it hit,
+ * and only if the same key missed once before. A small ghost table of
+ * recently missed key hashes gives that second chance, so inputs that never
+ * repeat do not churn the cache. The cache holds at most a fixed number of
+ * nodes and evicts in approximately least recently used order: a hit only
+ * marks a node, and eviction gives marked nodes a second chance, so the
+ * lookup path never reorders the map.
+ *
+ * Instances are not thread-safe; use one per thread.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class PrefixStateCache {
+
+    /** Default number of characters per cached block. */
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+    /** Default maximum number of cached nodes. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Largest capacity the node map and ghost table are sized for up front
+    private static final int MAX_PRESIZED = 1 << 20;
+
+    private final DFATable table;
+    private final int blockSize;
+    private final int capacity;
+    private final LinkedHashMap<Key, Node> nodes;
+    private final int[] ghost;
+    private final Key probe = new Key();
+    private long nextId = 1;
+
+    private long calls;
+    private long charsProcessed;
+    private long charsSkipped;
+    private long evictions;
+
+    /**
+     * A cached prefix: the parent node id and this node's block of characters.
+     * Stored keys own their block; the reusable probe key points into the input.
+     */
+    private static final class Key {
+        long parent;
+        CharSequence chars;
+        int offset;
+        int length;
+        int hash;
+
+        Key() {
+        }
+
+        Key(long parent, String chars, int hash) {
+            this.parent = parent;
+            this.chars = chars;
+            this.length = chars.length();
+            this.hash = hash;
+        }
+
+        void set(long parent, CharSequence chars, int offset, int length) {
+            this.parent = parent;
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            int h = Long.hashCode(parent * 0x9E3779B97F4A7C15L);
+            for (int i = offset, end = offset + length; i < end; i++) h = 31 * h + chars.charAt(i);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            if (parent != other.parent || length != other.length || hash != other.hash) return false;
+            if (chars instanceof String && other.chars instanceof String) {
+                return ((String) chars).regionMatches(offset, (String) other.chars, other.offset, length);
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars.charAt(offset + i) != other.chars.charAt(other.offset + i)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A cached trie node: its id, used as the parent of deeper keys, and the state reached.
+     */
+    private static final class Node {
+        final long id;
+        final int state;
+        boolean used;
+
+        Node(long id, int state) {
+            this.id = id;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Creates a cache with the default block size and capacity.
+     *
+     * @param table The compiled DFA.
+     */
+    public PrefixStateCache(DFATable table) {
+        this(table, DEFAULT_BLOCK_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param table The compiled DFA.
+     * @param blockSize The number of characters per cached block.
+     * @param capacity The maximum number of cached nodes. Above 1 << 20 the node
+     *        map grows on demand and the ghost table stays at its size for 1 << 20.
+     * @throws IllegalArgumentException if blockSize or capacity is not positive.
+     */
+    public PrefixStateCache(DFATable table, int blockSize, int capacity) {
+        if (blockSize <= 0) throw new IllegalArgumentException("block size must be positive: " + blockSize);
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.table = table;
+        this.blockSize = blockSize;
+        this.capacity = capacity;
+        int presized = Math.min(capacity, MAX_PRESIZED);
+        this.nodes = new LinkedHashMap<>(presized * 2);
+        this.ghost = new int[Integer.highestOneBit(presized * 4 - 1) << 1];
+    }
+
+    /**
+     * Runs the DFA on an input, with the same result as {@link DFATable#accepts(CharSequence)}.
+     *
+     * @param s The input.
+     * @return true if the input is accepted, false otherwise.
+     */
+    public boolean accepts(CharSequence s) {
+        calls++;
+        int state = table.getStartState();
+        if (state == DFATable.NONE) return false;
+        int n = s.length();
+        long parent = 0;
+        int pos = 0;
+        boolean missed = false;
+        while (pos + blockSize <= n) {
+            probe.set(parent, s, pos, blockSize);
+            Node hit = nodes.get(probe);
+            if (hit == null) {
+                missed = true;
+                break;
+            }
+            hit.used = true;
+            parent = hit.id;
+            state = hit.state;
+            pos += blockSize;
+        }
+        probe.chars = null;
+        charsSkipped += pos;
+
+        // Admit the missed block if its key missed before, once the run has passed it
+        int admitAt = -1;
+        if (missed) {
+            int slot = probe.hash & (ghost.length - 1);
+            if (ghost[slot] == probe.hash) admitAt = pos + blockSize;
+            else ghost[slot] = probe.hash;
+        }
+        int start = pos;
+        for (int i = pos; i < n; i++) {
+            state = table.step(state, s.charAt(i));
+            if (state == DFATable.NONE) {
+                charsProcessed += i + 1 - start;
+                return false;
+            }
+            if (i + 1 == admitAt) admit(parent, s, pos, state);
+        }
+        charsProcessed += n - start;
+        return table.isFinal(state);
+    }
+
+    private void admit(long parent, CharSequence s, int pos, int state) {
+        String block = s.subSequence(pos, pos + blockSize).toString();
+        nodes.put(new Key(parent, block, probe.hash), new Node(nextId++, state));
+        Iterator<Map.Entry<Key, Node>> it = nodes.entrySet().iterator();
+        while (nodes.size() > capacity) {
+            Map.Entry<Key, Node> eldest = it.next();
+            it.remove();
+            Node node = eldest.getValue();
+            if (node.used) {
+                // Second chance: move to the back instead of evicting
+                node.used = false;
+                nodes.put(eldest.getKey(), node);
+                it = nodes.entrySet().iterator();
+            } else {
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached nodes.
+     *
+     * @return The node count.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the number of runs so far.
+     *
+     * @return The call count.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the number of characters the DFA was stepped on, over all runs.
+     *
+     * @return The characters processed.
+     */
+    public long getCharsProcessed() {
+        return charsProcessed;
+    }
+
+    /**
+     * Returns the number of characters skipped by starting from a cached state, over all runs.
+     *
+     * @return The characters skipped.
+     */
+    public long getCharsSkipped() {
+        return charsSkipped;
+    }
+
+    /**
+     * Returns the number of nodes evicted to stay within capacity.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes all cached nodes and clears the counters.
+     */
+    public void clear() {
+        nodes.clear();
+        Arrays.fill(ghost, 0);
+        calls = 0;
+        charsProcessed = 0;
+        charsSkipped = 0;
+        evictions = 0;
+    }
+}
@@ -0,0 +1,375 @@
+package fa.dfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a regular expression directly into a DFA.
+ * The compiler uses the followpos (position automaton) construction: the
+ * pattern is parsed into a syntax tree whose leaves are numbered positions,
+ * nullable/firstpos/lastpos/followpos are computed while parsing, and the
+ * DFA states are sets of positions, hash-consed so each set becomes exactly
+ * one state. No NFA is built. Symbols that occur in exactly the same leaves
+ * are grouped so that wide character classes cost one transition
+ * computation per group rather than per character.
+ *
+ * Supported syntax: literals, concatenation, alternation {@code |},
+ * grouping {@code ( )}, {@code * + ?}, character classes {@code [abc]} with
+ * ranges {@code [a-z0-9]}, the escapes {@code \d \w \s \t \n \r \f} and
+ * backslash-escaped metacharacters. The alphabet of the resulting DFA is
+ * the set of characters the pattern mentions, so there is no {@code .} and
+ * no negated class.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public class RegexCompiler {
+
+    private static final String METACHARACTERS = "|*+?()[]{}\\.^$";
+
+    private final String pattern;
+    private int at;
+
+    // Per position: the characters it matches and the positions that may follow it
+    private final List<BitSet> leafChars = new ArrayList<>();
+    private final List<BitSet> followpos = new ArrayList<>();
+
+    /**
+     * A syntax tree node, reduced to what the followpos construction needs.
+     */
+    private static final class Node {
+        final boolean nullable;
+        final BitSet first;
+        final BitSet last;
+
+        Node(boolean nullable, BitSet first, BitSet last) {
+            this.nullable = nullable;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    private RegexCompiler(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compiles a regular expression into a DFA whose states are named q0, q1, ...
+     * with q0 the start state. Missing transitions lead to rejection.
+     *
+     * @param pattern The regular expression.
+     * @return A DFA accepting exactly the strings the pattern matches in full.
+     * @throws IllegalArgumentException if the pattern is malformed, uses unsupported syntax, or
+     *         needs more states times symbols than one table can index.
+     */
+    public static DFA compile(String pattern) {
+        return DFAEvents.compile("RegexCompiler.compile", () -> new RegexCompiler(pattern).build().rebuild());
+    }
+
+    /**
+     * Compiles a regular expression into a compiled table, skipping the DFA object graph.
+     *
+     * @param pattern The regular expression.
+     * @return A table accepting exactly the strings the pattern matches in full.
+     * @throws IllegalArgumentException if the pattern is malformed, uses unsupported syntax, or
+     *         needs more states times symbols than one table can index.
+     */
+    public static DFATable compileTable(String pattern) {
+        return DFAEvents.compile("RegexCompiler.compileTable", () -> new RegexCompiler(pattern).build());
+    }
+
+    private DFATable build() {
+        Node body = parseAlternation();
+        if (at < pattern.length()) throw error("unexpected '" + pattern.charAt(at) + "'");
+        int end = leafChars.size();
+        Node root = concat(body, leaf(new BitSet()));
+
+        // Group the alphabet into classes of characters found in exactly the same leaves
+        BitSet alphabet = new BitSet();
+        for (BitSet chars : leafChars) alphabet.or(chars);
+        Map<BitSet, List<Character>> byLeaves = new HashMap<>();
+        List<BitSet> classLeaves = new ArrayList<>();
+        for (int c = alphabet.nextSetBit(0); c >= 0; c = alphabet.nextSetBit(c + 1)) {
+            BitSet leaves = new BitSet();
+            for (int p = 0; p < end; p++) {
+                if (leafChars.get(p).get(c)) leaves.set(p);
+            }
+            List<Character> members = byLeaves.get(leaves);
+            if (members == null) {
+                members = new ArrayList<>();
+                byLeaves.put(leaves, members);
+                classLeaves.add(leaves);
+            }
+            members.add((char) c);
+        }
+
+        char[] symbols = new char[alphabet.cardinality()];
+        int[] symbolClass = new int[symbols.length];
+        int k = 0;
+        for (int c = alphabet.nextSetBit(0); c >= 0; c = alphabet.nextSetBit(c + 1)) symbols[k++] = (char) c;
+        Map<Character, Integer> classOf = new HashMap<>();
+        for (int i = 0; i < classLeaves.size(); i++) {
+            for (char c : byLeaves.get(classLeaves.get(i))) classOf.put(c, i);
+        }
+        for (int i = 0; i < symbols.length; i++) symbolClass[i] = classOf.get(symbols[i]);
+
+        // Subset construction over position sets
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        List<int[]> classRows = new ArrayList<>();
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        ids.put(root.first, 0);
+        sets.add(root.first);
+        work.add(0);
+        while (!work.isEmpty()) {
+            int id = work.poll();
+            BitSet set = sets.get(id);
+            int[] row = new int[classLeaves.size()];
+            for (int cl = 0; cl < row.length; cl++) {
+                BitSet target = new BitSet();
+                BitSet hits = (BitSet) set.clone();
+                hits.and(classLeaves.get(cl));
+                for (int p = hits.nextSetBit(0); p >= 0; p = hits.nextSetBit(p + 1)) target.or(followpos.get(p));
+                if (target.isEmpty()) {
+                    row[cl] = DFATable.NONE;
+                    continue;
+                }
+                Integer to = ids.get(target);
+                if (to == null) {
+                    to = sets.size();
+                    ids.put(target, to);
+                    sets.add(target);
+                    work.add(to);
+                }
+                row[cl] = to;
+            }
+            while (classRows.size() <= id) classRows.add(null);
+            classRows.set(id, row);
+        }
+
+        int n = sets.size();
+        int[] delta;
+        try {
+            delta = new int[Math.multiplyExact(n, symbols.length)];
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("pattern needs " + n + " states over " + symbols.length
+                    + " symbols, too many for one table", e);
+        }
+        boolean[] accepting = new boolean[n];
+        String[] names = new String[n];
+        for (int q = 0; q < n; q++) {
+            int[] row = classRows.get(q);
+            for (int a = 0; a < symbols.length; a++) delta[q * symbols.length + a] = row[symbolClass[a]];
+            accepting[q] = sets.get(q).get(end);
+            names[q] = "q" + q;
+        }
+        return new DFATable(symbols, delta, accepting, 0, names);
+    }
+
+    // ---- parser: alternation := concatenation ('|' concatenation)*
+
+    private Node parseAlternation() {
+        Node node = parseConcatenation();
+        while (at < pattern.length() && pattern.charAt(at) == '|') {
+            at++;
+            node = alternate(node, parseConcatenation());
+        }
+        return node;
+    }
+
+    // concatenation := repetition*
+    private Node parseConcatenation() {
+        Node node = epsilon();
+        while (at < pattern.length()) {
+            char c = pattern.charAt(at);
+            if (c == '|' || c == ')') break;
+            node = concat(node, parseRepetition());
+        }
+        return node;
+    }
+
+    // repetition := atom ('*' | '+' | '?')*
+    private Node parseRepetition() {
+        Node node = parseAtom();
+        while (at < pattern.length()) {
+            char c = pattern.charAt(at);
+            if (c == '*') node = star(node);
+            else if (c == '+') node = plus(node);
+            else if (c == '?') node = optional(node);
+            else break;
+            at++;
+        }
+        return node;
+    }
+
+    // atom := '(' alternation ')' | '[' class ']' | escape | literal
+    private Node parseAtom() {
+        char c = pattern.charAt(at);
+        switch (c) {
+        case '(': {
+            at++;
+            Node node = parseAlternation();
+            if (at >= pattern.length() || pattern.charAt(at) != ')') throw error("missing ')'");
+            at++;
+            return node;
+        }
+        case '[':
+            at++;
+            return leaf(parseClass());
+        case '\\':
+            at++;
+            return leaf(parseEscape());
+        case '*':
+        case '+':
+        case '?':
+            throw error("dangling '" + c + "'");
+        default:
+            if (METACHARACTERS.indexOf(c) >= 0) throw error("unsupported '" + c + "'");
+            at++;
+            BitSet chars = new BitSet();
+            chars.set(c);
+            return leaf(chars);
+        }
+    }
+
+    private BitSet parseClass() {
+        BitSet chars = new BitSet();
+        if (at < pattern.length() && pattern.charAt(at) == '^') throw error("negated classes are not supported");
+        boolean firstItem = true;
+        while (true) {
+            if (at >= pattern.length()) throw error("missing ']'");
+            char c = pattern.charAt(at);
+            if (c == ']' && !firstItem) {
+                at++;
+                return chars;
+            }
+            firstItem = false;
+            at++;
+            if (c == '\\') {
+                BitSet escaped = parseEscape();
+                if (escaped.cardinality() != 1) {
+                    chars.or(escaped);
+                    continue;
+                }
+                c = (char) escaped.nextSetBit(0);
+            }
+            if (at + 1 < pattern.length() && pattern.charAt(at) == '-' && pattern.charAt(at + 1) != ']') {
+                at++;
+                char hi = pattern.charAt(at++);
+                if (hi == '\\') {
+                    BitSet escaped = parseEscape();
+                    if (escaped.cardinality() != 1) throw error("bad range end");
+                    hi = (char) escaped.nextSetBit(0);
+                }
+                if (hi < c) throw error("bad range " + c + "-" + hi);
+                chars.set(c, hi + 1);
+            } else {
+                chars.set(c);
+            }
+        }
+    }
+
+    private BitSet parseEscape() {
+        if (at >= pattern.length()) throw error("trailing '\\'");
+        char c = pattern.charAt(at++);
+        BitSet chars = new BitSet();
+        switch (c) {
+        case 'd':
+            chars.set('0', '9' + 1);
+            break;
+        case 'w':
+            chars.set('a', 'z' + 1);
+            chars.set('A', 'Z' + 1);
+            chars.set('0', '9' + 1);
+            chars.set('_');
+            break;
+        case 's':
+            chars.set(' ');
+            chars.set('\t');
+            chars.set('\n');
+            chars.set('\u000B');
+            chars.set('\f');
+            chars.set('\r');
+            break;
+        case 't':
+            chars.set('\t');
+            break;
+        case 'n':
+            chars.set('\n');
+            break;
+        case 'r':
+            chars.set('\r');
+            break;
+        case 'f':
+            chars.set('\f');
+            break;
+        default:
+            if (Character.isLetterOrDigit(c)) throw error("unsupported escape \\" + c);
+            chars.set(c);
+        }
+        return chars;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at index " + at + " in pattern: " + pattern);
+    }
+
+    // ---- node construction, maintaining followpos
+
+    private Node leaf(BitSet chars) {
+        int p = leafChars.size();
+        leafChars.add(chars);
+        followpos.add(new BitSet());
+        BitSet self = new BitSet();
+        self.set(p);
+        return new Node(false, self, self);
+    }
+
+    private static Node epsilon() {
+        return new Node(true, new BitSet(), new BitSet());
+    }
+
+    private Node concat(Node a, Node b) {
+        for (int p = a.last.nextSetBit(0); p >= 0; p = a.last.nextSetBit(p + 1)) followpos.get(p).or(b.first);
+        BitSet first = a.first;
+        if (a.nullable) {
+            first = (BitSet) a.first.clone();
+            first.or(b.first);
+        }
+        BitSet last = b.last;
+        if (b.nullable) {
+            last = (BitSet) b.last.clone();
+            last.or(a.last);
+        }
+        return new Node(a.nullable && b.nullable, first, last);
+    }
+
+    private static Node alternate(Node a, Node b) {
+        BitSet first = (BitSet) a.first.clone();
+        first.or(b.first);
+        BitSet last = (BitSet) a.last.clone();
+        last.or(b.last);
+        return new Node(a.nullable || b.nullable, first, last);
+    }
+
+    private Node star(Node a) {
+        loop(a);
+        return new Node(true, a.first, a.last);
+    }
+
+    private Node plus(Node a) {
+        loop(a);
+        return new Node(a.nullable, a.first, a.last);
+    }
+
+    private static Node optional(Node a) {
+        return new Node(true, a.first, a.last);
+    }
+
+    private void loop(Node a) {
+        for (int p = a.last.nextSetBit(0); p >= 0; p = a.last.nextSetBit(p + 1)) followpos.get(p).or(a.first);
+    }
+}
@@ -0,0 +1,127 @@
+package fa.dfa;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Renumbers the states of a compiled DFA so that rows that are used
+ * together sit together in memory. Two orders are available: breadth-first
+ * from the start state, which needs no workload, and hotness, which sorts
+ * states by visit counts collected with {@link #profile}. States the order
+ * does not reach keep their relative order at the end.
+ *
+ * A typical pass is {@code PackedDFATable.pack(table.renumber(order))},
+ * with {@link #report} describing the footprint change.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class StateLayout {
+
+    private StateLayout() {
+    }
+
+    /**
+     * Orders states by breadth-first search from the start state, visiting
+     * symbols in alphabet order.
+     *
+     * @param table The compiled DFA.
+     * @return The old number of each state, indexed by its new number.
+     */
+    public static int[] bfsOrder(DFATable table) {
+        int n = table.getStateCount();
+        int k = table.getSymbolCount();
+        int[] order = new int[n];
+        boolean[] seen = new boolean[n];
+        int count = 0;
+        if (table.getStartState() != DFATable.NONE) {
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(table.getStartState());
+            seen[table.getStartState()] = true;
+            while (!queue.isEmpty()) {
+                int q = queue.poll();
+                order[count++] = q;
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    if (to != DFATable.NONE && !seen[to]) {
+                        seen[to] = true;
+                        queue.add(to);
+                    }
+                }
+            }
+        }
+        for (int q = 0; q < n; q++) {
+            if (!seen[q]) order[count++] = q;
+        }
+        return order;
+    }
+
+    /**
+     * Counts how often each state is entered while running the inputs,
+     * including the start state once per input.
+     *
+     * @param table The compiled DFA.
+     * @param inputs A representative workload.
+     * @return The visit count of each state.
+     */
+    public static long[] profile(DFATable table, Iterable<? extends CharSequence> inputs) {
+        long[] visits = new long[table.getStateCount()];
+        int start = table.getStartState();
+        if (start == DFATable.NONE) return visits;
+        for (CharSequence s : inputs) {
+            int state = start;
+            visits[state]++;
+            for (int i = 0, n = s.length(); i < n; i++) {
+                state = table.step(state, s.charAt(i));
+                if (state == DFATable.NONE) break;
+                visits[state]++;
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * Orders states by decreasing visit count, breaking ties by breadth-first order.
+     *
+     * @param table The compiled DFA.
+     * @param visits The visit count of each state, as returned by {@link #profile}.
+     * @return The old number of each state, indexed by its new number.
+     */
+    public static int[] hotnessOrder(DFATable table, long[] visits) {
+        int n = table.getStateCount();
+        if (visits.length != n) throw new IllegalArgumentException("visits has " + visits.length + " entries, expected " + n);
+        int[] bfs = bfsOrder(table);
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) rank[bfs[i]] = i;
+        // Replace each count by its position among the distinct counts, then sort
+        // primitive keys holding that position, hottest first, above the BFS rank
+        long[] counts = visits.clone();
+        Arrays.sort(counts);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || counts[i] != counts[i - 1]) counts[distinct++] = counts[i];
+        }
+        long[] keys = new long[n];
+        for (int q = 0; q < n; q++) {
+            long coldness = distinct - 1 - Arrays.binarySearch(counts, 0, distinct, visits[q]);
+            keys[q] = coldness << 32 | rank[q];
+        }
+        Arrays.sort(keys);
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) out[i] = bfs[(int) keys[i]];
+        return out;
+    }
+
+    /**
+     * Describes the footprint of a table before and after packing.
+     *
+     * @param before The table before the pass.
+     * @param after The packed table.
+     * @return A one-line summary.
+     */
+    public static String report(DFATable before, PackedDFATable after) {
+        long b = before.footprintBytes();
+        long a = after.footprintBytes();
+        return String.format("%d states: %d bytes -> %d bytes (%d-byte entries, %.1f%%)", before.getStateCount(), b, a,
+                after.getEntryWidth(), b == 0 ? 100.0 : 100.0 * a / b);
+    }
+}
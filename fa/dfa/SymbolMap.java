@@ -0,0 +1,73 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Maps alphabet characters to their symbol index in a compiled table.
+ * Characters below {@link #DIRECT_LIMIT} are found by one array lookup,
+ * the rest by binary search.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+final class SymbolMap {
+
+    // Symbols below this value are found by direct array lookup
+    private static final int DIRECT_LIMIT = 4096;
+
+    private final int[] direct;
+    private final char[] sortedSymbols;
+    private final int[] sortedIndex;
+
+    /**
+     * Creates the map for symbols numbered by their position in the array.
+     *
+     * @param symbols The alphabet, in symbol index order.
+     */
+    SymbolMap(char[] symbols) {
+        int max = -1;
+        for (char c : symbols) max = Math.max(max, c);
+        direct = new int[Math.min(max, DIRECT_LIMIT - 1) + 1];
+        Arrays.fill(direct, DFATable.NONE);
+        int far = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            if (symbols[i] < DIRECT_LIMIT) direct[symbols[i]] = i;
+            else far++;
+        }
+        sortedSymbols = new char[far];
+        sortedIndex = new int[far];
+        if (far > 0) {
+            Integer[] order = new Integer[symbols.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Character.compare(symbols[a], symbols[b]));
+            int j = 0;
+            for (int i : order) {
+                if (symbols[i] >= DIRECT_LIMIT) {
+                    sortedSymbols[j] = symbols[i];
+                    sortedIndex[j++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a symbol.
+     *
+     * @param c The character to look up.
+     * @return The symbol index, or DFATable.NONE if c is not in the alphabet.
+     */
+    int indexOf(char c) {
+        if (c < direct.length) return direct[c];
+        if (c < DIRECT_LIMIT) return DFATable.NONE;
+        int i = Arrays.binarySearch(sortedSymbols, c);
+        return i >= 0 ? sortedIndex[i] : DFATable.NONE;
+    }
+
+    /**
+     * Returns the approximate heap size of the lookup arrays.
+     *
+     * @return The size in bytes.
+     */
+    long footprintBytes() {
+        return 4L * direct.length + 2L * sortedSymbols.length + 4L * sortedIndex.length;
+    }
+}
@@ -0,0 +1,294 @@
+package fa.dfa;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DFA over bytes that accepts exactly the UTF-8 encodings of the strings
+ * a char DFA accepts, so UTF-8 input can be matched without decoding.
+ *
+ * Each transition of the char DFA on a symbol c becomes a path of bytes
+ * spelling the UTF-8 encoding of c. A high surrogate followed by a low
+ * surrogate becomes the 4-byte encoding of the supplementary code point
+ * they form. Because UTF-8 is prefix-free, the paths leaving a state form a
+ * trie with the original states at its leaves. Intermediate nodes are
+ * hash-consed on their transition rows, which merges shared suffixes such
+ * as the common continuation bytes of a character range.
+ *
+ * Equivalence: a string s without unpaired surrogates is accepted by the
+ * char DFA if and only if its UTF-8 encoding is accepted here. The original
+ * states keep their numbers and final flags, and the only paths between
+ * them are complete encodings of one character, or of one surrogate pair
+ * that the char DFA can read in two steps. Byte sequences that are not
+ * valid UTF-8, including overlong forms, have no path and are rejected.
+ *
+ * Bytes with identical columns in the table share a byte class, so each
+ * node stores one int per class rather than 256.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class Utf8DFA {
+
+    private final int[] byteClass;
+    private final int classCount;
+    private final int[] delta;
+    private final boolean[] accepting;
+    private final int start;
+    private final int stateCount;
+
+    private Utf8DFA(int[] byteClass, int classCount, int[] delta, boolean[] accepting, int start, int stateCount) {
+        this.byteClass = byteClass;
+        this.classCount = classCount;
+        this.delta = delta;
+        this.accepting = accepting;
+        this.start = start;
+        this.stateCount = stateCount;
+    }
+
+    /**
+     * Builds the byte automaton for a DFA.
+     *
+     * @param dfa The char DFA.
+     * @return The equivalent UTF-8 byte automaton.
+     */
+    public static Utf8DFA compile(DFA dfa) {
+        return compile(DFATable.compile(dfa));
+    }
+
+    /**
+     * Builds the byte automaton for a compiled DFA.
+     *
+     * @param table The compiled char DFA.
+     * @return The equivalent UTF-8 byte automaton.
+     */
+    public static Utf8DFA compile(DFATable table) {
+        return new Builder(table).build();
+    }
+
+    /**
+     * Returns the number of states of the original DFA.
+     *
+     * @return The original state count.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the number of nodes, original states plus intermediate nodes.
+     *
+     * @return The node count.
+     */
+    public int getNodeCount() {
+        return accepting.length;
+    }
+
+    /**
+     * Returns the number of byte classes.
+     *
+     * @return The byte class count.
+     */
+    public int getByteClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Runs the automaton on UTF-8 bytes.
+     *
+     * @param utf8 The input bytes.
+     * @return true if the input is the encoding of an accepted string, false otherwise.
+     */
+    public boolean accepts(byte[] utf8) {
+        return accepts(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Runs the automaton on a range of UTF-8 bytes.
+     *
+     * @param utf8 The input bytes.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @return true if the range is the encoding of an accepted string, false otherwise.
+     */
+    public boolean accepts(byte[] utf8, int offset, int length) {
+        int node = start;
+        if (node == DFATable.NONE) return false;
+        int k = classCount;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            node = delta[node * k + byteClass[utf8[i] & 0xFF]];
+            if (node == DFATable.NONE) return false;
+        }
+        return accepting[node];
+    }
+
+    /**
+     * Runs the automaton on the remaining bytes of a buffer without changing its position.
+     *
+     * @param utf8 The input buffer.
+     * @return true if the remaining bytes are the encoding of an accepted string, false otherwise.
+     */
+    public boolean accepts(ByteBuffer utf8) {
+        if (utf8.hasArray()) {
+            return accepts(utf8.array(), utf8.arrayOffset() + utf8.position(), utf8.remaining());
+        }
+        int node = start;
+        if (node == DFATable.NONE) return false;
+        int k = classCount;
+        for (int i = utf8.position(), end = utf8.limit(); i < end; i++) {
+            node = delta[node * k + byteClass[utf8.get(i) & 0xFF]];
+            if (node == DFATable.NONE) return false;
+        }
+        return accepting[node];
+    }
+
+    /**
+     * Builds the byte trie per state, hash-consing intermediate nodes, then
+     * compresses the 256 byte columns into byte classes.
+     */
+    private static final class Builder {
+        private final DFATable table;
+        private final List<int[]> rows = new ArrayList<>();
+        private final Map<Row, Integer> interned = new HashMap<>();
+
+        Builder(DFATable table) {
+            this.table = table;
+        }
+
+        Utf8DFA build() {
+            int n = table.getStateCount();
+            int k = table.getSymbolCount();
+            for (int q = 0; q < n; q++) rows.add(null);
+
+            List<byte[]> seqs = new ArrayList<>();
+            List<Integer> targets = new ArrayList<>();
+            for (int q = 0; q < n; q++) {
+                seqs.clear();
+                targets.clear();
+                for (int a = 0; a < k; a++) {
+                    int to = table.next(q, a);
+                    if (to == DFATable.NONE) continue;
+                    char c = table.getSymbol(a);
+                    if (Character.isLowSurrogate(c)) continue;
+                    if (!Character.isHighSurrogate(c)) {
+                        seqs.add(encode(c));
+                        targets.add(to);
+                        continue;
+                    }
+                    for (int b = 0; b < k; b++) {
+                        char low = table.getSymbol(b);
+                        int to2 = Character.isLowSurrogate(low) ? table.next(to, b) : DFATable.NONE;
+                        if (to2 == DFATable.NONE) continue;
+                        seqs.add(encode(Character.toCodePoint(c, low)));
+                        targets.add(to2);
+                    }
+                }
+                rows.set(q, trie(seqs, targets, 0));
+            }
+
+            // Byte classes: bytes whose columns are identical across all rows
+            int[] byteClass = new int[256];
+            Map<Row, Integer> classes = new HashMap<>();
+            List<Integer> representative = new ArrayList<>();
+            for (int b = 0; b < 256; b++) {
+                int[] column = new int[rows.size()];
+                for (int r = 0; r < column.length; r++) column[r] = rows.get(r)[b];
+                Integer cl = classes.get(new Row(column));
+                if (cl == null) {
+                    cl = classes.size();
+                    classes.put(new Row(column), cl);
+                    representative.add(b);
+                }
+                byteClass[b] = cl;
+            }
+            int classCount = classes.size();
+            int nodes = rows.size();
+            int[] delta = new int[nodes * classCount];
+            for (int r = 0; r < nodes; r++) {
+                int[] row = rows.get(r);
+                for (int cl = 0; cl < classCount; cl++) delta[r * classCount + cl] = row[representative.get(cl)];
+            }
+            boolean[] accepting = new boolean[nodes];
+            for (int q = 0; q < n; q++) accepting[q] = table.isFinal(q);
+            return new Utf8DFA(byteClass, classCount, delta, accepting, table.getStartState(), n);
+        }
+
+        /**
+         * Returns the row of transitions for the sequences, read from position depth on.
+         */
+        private int[] trie(List<byte[]> seqs, List<Integer> targets, int depth) {
+            int[] row = new int[256];
+            Arrays.fill(row, DFATable.NONE);
+            Map<Integer, List<Integer>> byByte = new HashMap<>();
+            for (int i = 0; i < seqs.size(); i++) {
+                byte[] seq = seqs.get(i);
+                int b = seq[depth] & 0xFF;
+                if (seq.length == depth + 1) {
+                    row[b] = targets.get(i);
+                } else {
+                    byByte.computeIfAbsent(b, x -> new ArrayList<>()).add(i);
+                }
+            }
+            for (Map.Entry<Integer, List<Integer>> e : byByte.entrySet()) {
+                List<byte[]> subSeqs = new ArrayList<>();
+                List<Integer> subTargets = new ArrayList<>();
+                for (int i : e.getValue()) {
+                    subSeqs.add(seqs.get(i));
+                    subTargets.add(targets.get(i));
+                }
+                row[e.getKey()] = intern(trie(subSeqs, subTargets, depth + 1));
+            }
+            return row;
+        }
+
+        private int intern(int[] row) {
+            Row key = new Row(row);
+            Integer id = interned.get(key);
+            if (id == null) {
+                id = rows.size();
+                rows.add(row);
+                interned.put(key, id);
+            }
+            return id;
+        }
+
+        private static byte[] encode(int codePoint) {
+            if (codePoint < 0x80) {
+                return new byte[] { (byte) codePoint };
+            } else if (codePoint < 0x800) {
+                return new byte[] { (byte) (0xC0 | codePoint >> 6), (byte) (0x80 | codePoint & 0x3F) };
+            } else if (codePoint < 0x10000) {
+                return new byte[] { (byte) (0xE0 | codePoint >> 12), (byte) (0x80 | codePoint >> 6 & 0x3F),
+                        (byte) (0x80 | codePoint & 0x3F) };
+            }
+            return new byte[] { (byte) (0xF0 | codePoint >> 18), (byte) (0x80 | codePoint >> 12 & 0x3F),
+                    (byte) (0x80 | codePoint >> 6 & 0x3F), (byte) (0x80 | codePoint & 0x3F) };
+        }
+    }
+
+    /**
+     * An int array compared by contents, used as a hash key.
+     */
+    private static final class Row {
+        final int[] values;
+        final int hash;
+
+        Row(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && Arrays.equals(values, ((Row) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
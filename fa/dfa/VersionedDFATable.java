@@ -0,0 +1,295 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable version of a compiled DFA that can be patched cheaply.
+ * Rows live in chunks of {@value #CHUNK_ROWS} states, each chunk also
+ * holding the final bits of its states, and chunks hang off a two-level
+ * tree. A {@link Patch} copies only the chunks and tree nodes on the paths
+ * it touches; everything else is shared with the version it started from.
+ * Changing one transition therefore copies one chunk and two small arrays,
+ * whatever the size of the automaton, and readers holding older versions
+ * are never affected.
+ *
+ * States are numbered as in the {@link DFATable} the first version was
+ * made from, and new states get the next free numbers. The alphabet is
+ * fixed when the first version is made.
+ *
+ * @author Ryan Wensmann, Kodey Thompson
+ */
+public final class VersionedDFATable {
+
+    /** Number of states per chunk. */
+    public static final int CHUNK_ROWS = 64;
+    private static final int CHUNK_SHIFT = 6;
+    private static final int GROUP_SHIFT = 10;
+    private static final int GROUP_SIZE = 1 << GROUP_SHIFT;
+    private static final int STATE_GROUP_SHIFT = CHUNK_SHIFT + GROUP_SHIFT;
+
+    private final char[] symbols;
+    private final SymbolMap symbolMap;
+    // top[g][c] is chunk c of group g: CHUNK_ROWS rows of k ints, then two ints of final bits
+    private final int[][][] top;
+    private final int stateCount;
+    private final int start;
+    private final long version;
+
+    private VersionedDFATable(char[] symbols, SymbolMap symbolMap, int[][][] top, int stateCount, int start,
+            long version) {
+        this.symbols = symbols;
+        this.symbolMap = symbolMap;
+        this.top = top;
+        this.stateCount = stateCount;
+        this.start = start;
+        this.version = version;
+    }
+
+    /**
+     * Creates the first version from a compiled DFA.
+     *
+     * @param table The compiled DFA.
+     * @return Version 0.
+     */
+    public static VersionedDFATable of(DFATable table) {
+        int k = table.getSymbolCount();
+        char[] symbols = new char[k];
+        for (int a = 0; a < k; a++) symbols[a] = table.getSymbol(a);
+        int n = table.getStateCount();
+        int chunks = (n + CHUNK_ROWS - 1) >> CHUNK_SHIFT;
+        int[][][] top = new int[(chunks + GROUP_SIZE - 1) >> GROUP_SHIFT][][];
+        for (int g = 0; g < top.length; g++) top[g] = new int[GROUP_SIZE][];
+        for (int c = 0; c < chunks; c++) {
+            int[] chunk = newChunk(k);
+            for (int r = 0; r < CHUNK_ROWS; r++) {
+                int q = (c << CHUNK_SHIFT) + r;
+                if (q >= n) break;
+                for (int a = 0; a < k; a++) chunk[r * k + a] = table.next(q, a);
+                if (table.isFinal(q)) chunk[CHUNK_ROWS * k + (r >> 5)] |= 1 << r;
+            }
+            top[c >> GROUP_SHIFT][c & (GROUP_SIZE - 1)] = chunk;
+        }
+        return new VersionedDFATable(symbols, new SymbolMap(symbols), top, n, table.getStartState(), 0);
+    }
+
+    private static int[] newChunk(int k) {
+        int[] chunk = new int[CHUNK_ROWS * k + 2];
+        Arrays.fill(chunk, 0, CHUNK_ROWS * k, DFATable.NONE);
+        return chunk;
+    }
+
+    /**
+     * Returns the version number, counting commits since the first version.
+     *
+     * @return The version number.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of states.
+     *
+     * @return The state count.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the start state.
+     *
+     * @return The start state, or DFATable.NONE if there is none.
+     */
+    public int getStartState() {
+        return start;
+    }
+
+    /**
+     * Returns the target of a transition.
+     *
+     * @param state The source state.
+     * @param symbol The input character.
+     * @return The target state, or DFATable.NONE if there is no such transition.
+     */
+    public int next(int state, char symbol) {
+        int a = symbolMap.indexOf(symbol);
+        return a == DFATable.NONE ? DFATable.NONE : chunkOf(state)[(state & (CHUNK_ROWS - 1)) * symbols.length + a];
+    }
+
+    /**
+     * Returns whether a state is final.
+     *
+     * @param state The state.
+     * @return true if the state is final, false otherwise.
+     */
+    public boolean isFinal(int state) {
+        int r = state & (CHUNK_ROWS - 1);
+        return (chunkOf(state)[CHUNK_ROWS * symbols.length + (r >> 5)] & 1 << r) != 0;
+    }
+
+    /**
+     * Runs this version on an input, with the same result as {@link DFATable#accepts(CharSequence)}.
+     *
+     * @param s The input.
+     * @return true if the input is accepted, false otherwise.
+     */
+    public boolean accepts(CharSequence s) {
+        int state = start;
+        if (state == DFATable.NONE) return false;
+        int k = symbols.length;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int a = symbolMap.indexOf(s.charAt(i));
+            if (a == DFATable.NONE) return false;
+            state = chunkOf(state)[(state & (CHUNK_ROWS - 1)) * k + a];
+            if (state == DFATable.NONE) return false;
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Starts a patch against this version. This version is not changed.
+     *
+     * @return A new patch.
+     */
+    public Patch edit() {
+        return new Patch(this);
+    }
+
+    private int[] chunkOf(int state) {
+        return top[state >>> STATE_GROUP_SHIFT][(state >>> CHUNK_SHIFT) & (GROUP_SIZE - 1)];
+    }
+
+    /**
+     * A set of changes to one version, published as a new version by
+     * {@link #commit()}. Arrays copied by the patch are owned by it until
+     * commit; after that, further changes copy again. A patch is not thread-safe.
+     */
+    public static final class Patch {
+        private final char[] symbols;
+        private final SymbolMap symbolMap;
+        private int[][][] top;
+        private int stateCount;
+        private int start;
+        private long version;
+        private final Map<Object, Boolean> owned = new IdentityHashMap<>();
+
+        private Patch(VersionedDFATable base) {
+            symbols = base.symbols;
+            symbolMap = base.symbolMap;
+            top = base.top;
+            stateCount = base.stateCount;
+            start = base.start;
+            version = base.version;
+        }
+
+        /**
+         * Sets or removes a transition.
+         *
+         * @param from The source state.
+         * @param symbol The input character.
+         * @param to The target state, or DFATable.NONE to remove the transition.
+         * @return true if successful, false if a state does not exist or the symbol is not in the alphabet.
+         */
+        public boolean setTransition(int from, char symbol, int to) {
+            int a = symbolMap.indexOf(symbol);
+            if (a == DFATable.NONE || !exists(from) || to != DFATable.NONE && !exists(to)) return false;
+            writableChunk(from)[(from & (CHUNK_ROWS - 1)) * symbols.length + a] = to;
+            return true;
+        }
+
+        /**
+         * Sets whether a state is final.
+         *
+         * @param state The state.
+         * @param isFinal The final flag.
+         * @return true if successful, false if the state does not exist.
+         */
+        public boolean setFinal(int state, boolean isFinal) {
+            if (!exists(state)) return false;
+            int r = state & (CHUNK_ROWS - 1);
+            int[] chunk = writableChunk(state);
+            int i = CHUNK_ROWS * symbols.length + (r >> 5);
+            if (isFinal) chunk[i] |= 1 << r;
+            else chunk[i] &= ~(1 << r);
+            return true;
+        }
+
+        /**
+         * Sets the start state.
+         *
+         * @param state The new start state.
+         * @return true if successful, false if the state does not exist.
+         */
+        public boolean setStart(int state) {
+            if (!exists(state)) return false;
+            start = state;
+            return true;
+        }
+
+        /**
+         * Adds a non-final state with no transitions.
+         *
+         * @return The number of the new state.
+         */
+        public int addState() {
+            int q = stateCount++;
+            int g = q >>> STATE_GROUP_SHIFT;
+            int c = (q >>> CHUNK_SHIFT) & (GROUP_SIZE - 1);
+            if (g == top.length) {
+                top = Arrays.copyOf(top, g + 1);
+                owned.put(top, Boolean.TRUE);
+                int[][] group = new int[GROUP_SIZE][];
+                owned.put(group, Boolean.TRUE);
+                top[g] = group;
+            }
+            if (top[g][c] == null) {
+                int[] chunk = newChunk(symbols.length);
+                owned.put(chunk, Boolean.TRUE);
+                writableGroup(g)[c] = chunk;
+            }
+            return q;
+        }
+
+        /**
+         * Publishes the changes as a new immutable version.
+         *
+         * @return The new version.
+         */
+        public VersionedDFATable commit() {
+            owned.clear();
+            return new VersionedDFATable(symbols, symbolMap, top, stateCount, start, ++version);
+        }
+
+        private boolean exists(int state) {
+            return state >= 0 && state < stateCount;
+        }
+
+        private int[][] writableGroup(int g) {
+            if (!owned.containsKey(top)) {
+                top = top.clone();
+                owned.put(top, Boolean.TRUE);
+            }
+            int[][] group = top[g];
+            if (!owned.containsKey(group)) {
+                group = group.clone();
+                owned.put(group, Boolean.TRUE);
+                top[g] = group;
+            }
+            return group;
+        }
+
+        private int[] writableChunk(int state) {
+            int g = state >>> STATE_GROUP_SHIFT;
+            int c = (state >>> CHUNK_SHIFT) & (GROUP_SIZE - 1);
+            int[] chunk = top[g][c];
+            if (owned.containsKey(chunk)) return chunk;
+            chunk = chunk.clone();
+            owned.put(chunk, Boolean.TRUE);
+            writableGroup(g)[c] = chunk;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package test.dfa;
+
+import java.util.Random;
+
+import fa.dfa.AcceleratedMatcher;
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+/**
+ * Measures self-loop acceleration on long, loop-heavy inputs: comma
+ * separated records whose fields are long quoted strings or long digit
+ * runs. Compares DFA.accepts, DFATable.accepts and AcceleratedMatcher
+ * with and without the alphabet check.
+ *
+ * Usage: java test.dfa.AcceleratedMatcherBenchmark [inputs] [fieldLength]
+ */
+public class AcceleratedMatcherBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int fieldLength = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		String pattern = "(\"[a-z ,.;:]*\"|[0-9]+)(,(\"[a-z ,.;:]*\"|[0-9]+))*";
+		DFA dfa = RegexCompiler.compile(pattern);
+		DFATable table = DFATable.compile(dfa);
+		AcceleratedMatcher checked = new AcceleratedMatcher(table);
+		AcceleratedMatcher unchecked = new AcceleratedMatcher(table, true);
+
+		Random rnd = new Random(31);
+		String[] inputs = new String[count];
+		long chars = 0;
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int f = 0; f < 20; f++) {
+				if (f > 0) sb.append(',');
+				if (rnd.nextBoolean()) {
+					sb.append('"');
+					for (int j = 0; j < fieldLength; j++) sb.append("abcdefgh ij,.".charAt(rnd.nextInt(13)));
+					sb.append('"');
+				} else {
+					for (int j = 0; j < fieldLength / 4; j++) sb.append((char) ('0' + rnd.nextInt(10)));
+				}
+			}
+			inputs[i] = sb.toString();
+			chars += inputs[i].length();
+		}
+
+		for (int round = 0; round < 5; round++) {
+			long t0 = System.nanoTime();
+			int a = 0;
+			for (String s : inputs) if (dfa.accepts(s)) a++;
+			long tDfa = System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			int b = 0;
+			for (String s : inputs) if (table.accepts(s)) b++;
+			long tTable = System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			int c = 0;
+			for (String s : inputs) if (checked.accepts(s)) c++;
+			long tChecked = System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			int d = 0;
+			for (String s : inputs) if (unchecked.accepts(s)) d++;
+			long tUnchecked = System.nanoTime() - t0;
+
+			System.out.printf("round %d (accepted %d/%d/%d/%d of %d)%n", round, a, b, c, d, count);
+			print("DFA.accepts", chars, tDfa);
+			print("DFATable.accepts", chars, tTable);
+			print("accelerated, checked", chars, tChecked);
+			print("accelerated, unchecked", chars, tUnchecked);
+		}
+	}
+
+	private static void print(String name, long chars, long nanos) {
+		System.out.printf("  %-24s %8.1f MB/s%n", name, chars * 2 / (nanos / 1e9) / 1e6);
+	}
+}
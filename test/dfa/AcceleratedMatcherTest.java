@@ -0,0 +1,146 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.AcceleratedMatcher;
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+public class AcceleratedMatcherTest {
+
+	private static final String SIGMA = "abcdexz";
+
+	/**
+	 * p --x--> q, q loops on a-d, q --e--> r, q --z--> sink.
+	 * r is final and loops on everything; sink loops on everything and never accepts.
+	 */
+	private DFA loops() {
+		DFA dfa = new DFA();
+		for (char c : SIGMA.toCharArray()) dfa.addSigma(c);
+		dfa.addState("p");
+		dfa.addState("q");
+		dfa.addState("r");
+		dfa.addState("sink");
+		dfa.setStart("p");
+		dfa.setFinal("r");
+		dfa.addTransition("p", "q", 'x');
+		for (char c : "abcd".toCharArray()) dfa.addTransition("q", "q", c);
+		dfa.addTransition("q", "r", 'e');
+		dfa.addTransition("q", "sink", 'z');
+		for (char c : SIGMA.toCharArray()) {
+			dfa.addTransition("r", "r", c);
+			dfa.addTransition("sink", "sink", c);
+		}
+		return dfa;
+	}
+
+	private String randomInput(Random rnd, String symbols, boolean foreign) {
+		StringBuilder sb = new StringBuilder("x");
+		int runs = rnd.nextInt(4);
+		for (int r = 0; r <= runs; r++) {
+			int length = rnd.nextInt(3) == 0 ? rnd.nextInt(8) : rnd.nextInt(200);
+			for (int i = 0; i < length; i++) sb.append(symbols.charAt(rnd.nextInt(4)));
+			if (rnd.nextInt(3) != 0) sb.append(symbols.charAt(rnd.nextInt(symbols.length())));
+		}
+		if (rnd.nextInt(10) == 0) sb.deleteCharAt(0);
+		if (foreign && rnd.nextInt(4) == 0) sb.insert(rnd.nextInt(sb.length() + 1), '#');
+		return sb.toString();
+	}
+
+	@Test
+	public void testExitsAndDeadStates() {
+		DFATable table = DFATable.compile(loops());
+		AcceleratedMatcher m = new AcceleratedMatcher(table);
+		int p = table.stateIndex("p");
+		int q = table.stateIndex("q");
+		int r = table.stateIndex("r");
+		assertFalse(m.isAccelerated(p));
+		assertNull(m.getExitSymbols(p));
+		// The transition to the dead sink is not an exit
+		assertTrue(m.isAccelerated(q));
+		assertArrayEquals(new char[] { 'e' }, m.getExitSymbols(q));
+		// A state that loops on every symbol has no exits at all
+		assertTrue(m.isAccelerated(r));
+		assertEquals(0, m.getExitSymbols(r).length);
+
+		System.out.println("accelerated exits pass");
+	}
+
+	@Test
+	public void testAgreesWithTable() {
+		DFATable table = DFATable.compile(loops());
+		AcceleratedMatcher checked = new AcceleratedMatcher(table);
+		AcceleratedMatcher unchecked = new AcceleratedMatcher(table, true);
+		Random rnd = new Random(31);
+		for (int i = 0; i < 5000; i++) {
+			String s = randomInput(rnd, SIGMA, true);
+			assertEquals(s, table.accepts(s), checked.accepts(s));
+			String t = randomInput(rnd, SIGMA, false);
+			assertEquals(t, table.accepts(t), checked.accepts(t));
+			assertEquals(t, table.accepts(t), unchecked.accepts(t));
+		}
+
+		// Long runs that end in a dead state, a foreign character, or nothing
+		StringBuilder run = new StringBuilder("x");
+		for (int i = 0; i < 1000; i++) run.append("abcd".charAt(i % 4));
+		String body = run.toString();
+		assertFalse(checked.accepts(body));
+		assertFalse(checked.accepts(body + "z"));
+		assertFalse(checked.accepts(body + "ze"));
+		assertFalse(checked.accepts(body + "#e"));
+		assertTrue(checked.accepts(body + "e"));
+		assertTrue(checked.accepts(body + "e" + body + "z"));
+		assertFalse(checked.accepts(body + "e" + body + "#"));
+		assertTrue(unchecked.accepts(body + "e" + body));
+		assertFalse(unchecked.accepts(body + "z" + body + "e"));
+
+		System.out.println("accelerated agreement pass");
+	}
+
+	@Test
+	public void testRegexAndGeneratedAutomata() {
+		DFATable csv = RegexCompiler.compileTable("(\"[a-z ,.;:]*\"|[0-9]+)(,(\"[a-z ,.;:]*\"|[0-9]+))*");
+		AcceleratedMatcher matcher = new AcceleratedMatcher(csv);
+		Random rnd = new Random(31);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int f = rnd.nextInt(4); f >= 0; f--) {
+				if (sb.length() > 0) sb.append(',');
+				int length = rnd.nextInt(100);
+				if (rnd.nextBoolean()) {
+					sb.append('"');
+					for (int j = 0; j < length; j++) sb.append("abcdefgh ij,.\"".charAt(rnd.nextInt(14)));
+					if (rnd.nextInt(5) != 0) sb.append('"');
+				} else {
+					for (int j = 0; j < length; j++) sb.append((char) ('0' + rnd.nextInt(10)));
+				}
+			}
+			if (rnd.nextInt(8) == 0) sb.insert(rnd.nextInt(sb.length() + 1), '\u00e9');
+			String s = sb.toString();
+			assertEquals(s, csv.accepts(s), matcher.accepts(s));
+		}
+
+		for (AutomatonGenerator.Shape shape : AutomatonGenerator.Shape.values()) {
+			for (int symbols : new int[] { 2, 3, 12 }) {
+				String alphabet = AutomatonGenerator.alphabet(symbols);
+				DFATable table = DFATable.compile(new AutomatonGenerator(symbols).generate(shape, 50, alphabet));
+				AcceleratedMatcher checked = new AcceleratedMatcher(table);
+				AcceleratedMatcher unchecked = new AcceleratedMatcher(table, true);
+				for (String s : new WorkloadGenerator(table, alphabet, symbols).generate(500, 300)) {
+					assertEquals(shape + " on " + s, table.accepts(s), checked.accepts(s));
+					if (s.indexOf(WorkloadGenerator.FOREIGN) < 0) {
+						assertEquals(shape + " on " + s, table.accepts(s), unchecked.accepts(s));
+					}
+				}
+			}
+		}
+
+		System.out.println("accelerated regex and generated pass");
+	}
+
+}
@@ -0,0 +1,142 @@
+package test.dfa;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import fa.dfa.AcceptanceProcessor;
+import fa.dfa.DFA;
+
+/**
+ * Load generator comparing AcceptanceProcessor against starting one
+ * platform thread per request. Reports throughput and p50/p99 latency,
+ * where latency runs from handing the input over to seeing its result.
+ *
+ * Usage: java test.dfa.AcceptanceProcessorBenchmark [requests] [inputLength]
+ */
+public class AcceptanceProcessorBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+		DFA dfa = containsDoubleZero();
+		String[] inputs = new String[requests];
+		Random rnd = new Random(28);
+		for (int i = 0; i < requests; i++) {
+			char[] c = new char[length];
+			for (int j = 0; j < length; j++) c[j] = rnd.nextInt(4) == 0 ? '0' : '1';
+			inputs[i] = new String(c);
+		}
+
+		for (int round = 0; round < 3; round++) {
+			report("thread-per-request", threadPerRequest(dfa, inputs));
+			report("processor unordered", processor(dfa, inputs, false));
+			report("processor ordered", processor(dfa, inputs, true));
+		}
+	}
+
+	private static DFA containsDoubleZero() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.addState("c");
+		dfa.setStart("a");
+		dfa.setFinal("c");
+		dfa.addTransition("a", "b", '0');
+		dfa.addTransition("a", "a", '1');
+		dfa.addTransition("b", "c", '0');
+		dfa.addTransition("b", "a", '1');
+		dfa.addTransition("c", "c", '0');
+		dfa.addTransition("c", "c", '1');
+		return dfa;
+	}
+
+	private static long[] threadPerRequest(DFA dfa, String[] inputs) throws InterruptedException {
+		long[] latency = new long[inputs.length];
+		Thread[] threads = new Thread[inputs.length];
+		long begin = System.nanoTime();
+		for (int i = 0; i < inputs.length; i++) {
+			final int id = i;
+			final long t0 = System.nanoTime();
+			threads[i] = new Thread(() -> {
+				dfa.accepts(inputs[id]);
+				latency[id] = System.nanoTime() - t0;
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) t.join();
+		return withElapsed(latency, System.nanoTime() - begin);
+	}
+
+	private static long[] processor(DFA dfa, String[] inputs, boolean ordered) throws InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long[] submitted = new long[inputs.length];
+		long[] latency = new long[inputs.length];
+		CountDownLatch done = new CountDownLatch(1);
+
+		SubmissionPublisher<CharSequence> source = new SubmissionPublisher<>(pool, 1024);
+		AcceptanceProcessor processor = new AcceptanceProcessor(dfa, pool, 64, 1, TimeUnit.MILLISECONDS,
+				4096, ordered);
+		source.subscribe(processor);
+		processor.subscribe(new Flow.Subscriber<AcceptanceProcessor.Result>() {
+			private Flow.Subscription s;
+			private int received;
+
+			public void onSubscribe(Flow.Subscription s) {
+				this.s = s;
+				s.request(256);
+			}
+
+			public void onNext(AcceptanceProcessor.Result r) {
+				int id = (int) r.getSequence();
+				latency[id] = System.nanoTime() - submitted[id];
+				if (++received % 256 == 0) s.request(256);
+			}
+
+			public void onError(Throwable t) {
+				t.printStackTrace();
+				done.countDown();
+			}
+
+			public void onComplete() {
+				done.countDown();
+			}
+		});
+
+		long begin = System.nanoTime();
+		for (int i = 0; i < inputs.length; i++) {
+			submitted[i] = System.nanoTime();
+			source.submit(inputs[i]);
+		}
+		source.close();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+		return withElapsed(latency, elapsed);
+	}
+
+	private static long[] withElapsed(long[] latency, long elapsed) {
+		long[] out = Arrays.copyOf(latency, latency.length + 1);
+		out[latency.length] = elapsed;
+		return out;
+	}
+
+	private static void report(String name, long[] latencyAndElapsed) {
+		int n = latencyAndElapsed.length - 1;
+		long elapsed = latencyAndElapsed[n];
+		long[] latency = Arrays.copyOf(latencyAndElapsed, n);
+		Arrays.sort(latency);
+		System.out.printf("%-22s %10.0f req/s  p50 %8.1f us  p99 %8.1f us%n", name,
+				n / (elapsed / 1e9), latency[n / 2] / 1e3, latency[(int) (n * 0.99)] / 1e3);
+	}
+}
@@ -0,0 +1,343 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fa.dfa.AcceptanceProcessor;
+import fa.dfa.DFA;
+
+public class AcceptanceProcessorTest {
+
+	private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	private static DFA containsDoubleZero() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.addState("c");
+		dfa.setStart("a");
+		dfa.setFinal("c");
+		dfa.addTransition("a", "b", '0');
+		dfa.addTransition("a", "a", '1');
+		dfa.addTransition("b", "c", '0');
+		dfa.addTransition("b", "a", '1');
+		dfa.addTransition("c", "c", '0');
+		dfa.addTransition("c", "c", '1');
+		return dfa;
+	}
+
+	private static List<String> inputs(int count) {
+		Random rnd = new Random(28);
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = rnd.nextInt(12); j > 0; j--) sb.append(rnd.nextInt(3) == 0 ? '0' : '1');
+			inputs.add(sb.toString());
+		}
+		return inputs;
+	}
+
+	/**
+	 * An upstream that records demand and cancellation; the test pushes items itself.
+	 */
+	private static final class Upstream implements Flow.Subscription {
+		final AtomicLong requested = new AtomicLong();
+		volatile boolean cancelled;
+
+		@Override
+		public void request(long n) {
+			requested.addAndGet(n);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	/**
+	 * A subscriber that records every signal and requests a fixed amount on subscribe.
+	 */
+	private static final class Recorder implements Flow.Subscriber<AcceptanceProcessor.Result> {
+		final List<AcceptanceProcessor.Result> results = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		final long initial;
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+		volatile boolean completed;
+		volatile boolean signalBeforeSubscribe;
+
+		Recorder(long initial) {
+			this.initial = initial;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription s) {
+			subscription = s;
+			if (initial > 0) s.request(initial);
+		}
+
+		@Override
+		public void onNext(AcceptanceProcessor.Result item) {
+			if (subscription == null) signalBeforeSubscribe = true;
+			synchronized (results) {
+				results.add(item);
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if (subscription == null) signalBeforeSubscribe = true;
+			error = t;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			if (subscription == null) signalBeforeSubscribe = true;
+			completed = true;
+			done.countDown();
+		}
+
+		int count() {
+			synchronized (results) {
+				return results.size();
+			}
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws InterruptedException {
+		assertTrue("timed out", latch.await(10, TimeUnit.SECONDS));
+	}
+
+	private static void awaitCount(Recorder recorder, int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (recorder.count() < count) {
+			assertTrue("timed out at " + recorder.count() + " of " + count, System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void testOrderedDelivery() throws Exception {
+		DFA dfa = containsDoubleZero();
+		List<String> inputs = inputs(3000);
+		AcceptanceProcessor processor = new AcceptanceProcessor(dfa, pool, 7, 1, TimeUnit.MILLISECONDS, 64, true);
+		Recorder recorder = new Recorder(Long.MAX_VALUE);
+		processor.subscribe(recorder);
+		Upstream upstream = new Upstream();
+		processor.onSubscribe(upstream);
+		int sent = 0;
+		while (sent < inputs.size()) {
+			// Push only what was requested, as a compliant publisher would
+			while (sent < upstream.requested.get() && sent < inputs.size()) processor.onNext(inputs.get(sent++));
+			Thread.yield();
+		}
+		processor.onComplete();
+		await(recorder.done);
+
+		assertTrue(recorder.completed);
+		assertNull(recorder.error);
+		assertEquals(inputs.size(), recorder.results.size());
+		for (int i = 0; i < inputs.size(); i++) {
+			AcceptanceProcessor.Result r = recorder.results.get(i);
+			assertEquals(i, r.getSequence());
+			assertEquals(inputs.get(i), r.getInput());
+			assertEquals(inputs.get(i), dfa.accepts(inputs.get(i)), r.isAccepted());
+		}
+
+		System.out.println("processor ordering pass");
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		DFA dfa = containsDoubleZero();
+		List<String> inputs = inputs(200);
+		int maxInFlight = 16;
+		AcceptanceProcessor processor = new AcceptanceProcessor(dfa, pool, 4, 1, TimeUnit.MILLISECONDS, maxInFlight, false);
+		Recorder recorder = new Recorder(5);
+		processor.subscribe(recorder);
+		Upstream upstream = new Upstream();
+		processor.onSubscribe(upstream);
+		assertEquals(maxInFlight, upstream.requested.get());
+
+		int sent = 0;
+		while (sent < upstream.requested.get()) processor.onNext(inputs.get(sent++));
+		awaitCount(recorder, 5);
+		Thread.sleep(50);
+		assertEquals("delivered beyond demand", 5, recorder.count());
+		// Upstream demand is only replenished by delivered results
+		assertTrue(upstream.requested.get() - recorder.count() <= maxInFlight);
+
+		recorder.subscription.request(20);
+		awaitCount(recorder, 16);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (upstream.requested.get() < 16 + maxInFlight) {
+			assertTrue("upstream demand not replenished", System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+		while (sent < upstream.requested.get()) processor.onNext(inputs.get(sent++));
+		awaitCount(recorder, 25);
+		Thread.sleep(50);
+		assertEquals("delivered beyond demand", 25, recorder.count());
+		assertTrue(upstream.requested.get() - recorder.count() <= maxInFlight);
+		assertFalse(recorder.signalBeforeSubscribe);
+
+		System.out.println("processor backpressure pass");
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		AcceptanceProcessor processor = new AcceptanceProcessor(containsDoubleZero(), pool, 2, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder recorder = new Recorder(2);
+		processor.subscribe(recorder);
+		Upstream upstream = new Upstream();
+		processor.onSubscribe(upstream);
+		for (String s : inputs(8)) processor.onNext(s);
+		awaitCount(recorder, 2);
+		recorder.subscription.cancel();
+		assertTrue(upstream.cancelled);
+		recorder.subscription.request(100);
+		processor.onNext("00");
+		processor.onComplete();
+		Thread.sleep(50);
+		assertEquals(2, recorder.count());
+		assertFalse(recorder.completed);
+		assertNull(recorder.error);
+
+		System.out.println("processor cancel pass");
+	}
+
+	@Test
+	public void testErrorPropagation() throws Exception {
+		AcceptanceProcessor processor = new AcceptanceProcessor(containsDoubleZero(), pool, 3, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder recorder = new Recorder(Long.MAX_VALUE);
+		processor.subscribe(recorder);
+		processor.onSubscribe(new Upstream());
+		for (String s : inputs(5)) processor.onNext(s);
+		IllegalStateException failure = new IllegalStateException("upstream failed");
+		processor.onError(failure);
+		await(recorder.done);
+		assertSame(failure, recorder.error);
+		assertFalse(recorder.completed);
+		assertFalse(recorder.signalBeforeSubscribe);
+
+		// An upstream that fails before anything is subscribed is reported once the subscriber arrives
+		AcceptanceProcessor early = new AcceptanceProcessor(containsDoubleZero(), pool, 3, 1, TimeUnit.MILLISECONDS, 8, true);
+		early.onSubscribe(new Upstream());
+		early.onError(failure);
+		Recorder late = new Recorder(0);
+		early.subscribe(late);
+		await(late.done);
+		assertSame(failure, late.error);
+		assertFalse(late.signalBeforeSubscribe);
+
+		System.out.println("processor error pass");
+	}
+
+	@Test
+	public void testEvaluationFailure() throws Exception {
+		// A DFA without a start state throws on every input
+		DFA broken = new DFA();
+		broken.addSigma('0');
+		broken.addState("a");
+		AcceptanceProcessor processor = new AcceptanceProcessor(broken, pool, 2, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder recorder = new Recorder(Long.MAX_VALUE);
+		processor.subscribe(recorder);
+		Upstream upstream = new Upstream();
+		processor.onSubscribe(upstream);
+		processor.onNext("0");
+		processor.onNext("00");
+		await(recorder.done);
+		assertTrue(recorder.error instanceof NullPointerException);
+		assertFalse(recorder.completed);
+		assertTrue(upstream.cancelled);
+		processor.onNext("000");
+		processor.onComplete();
+		assertEquals(0, recorder.count());
+
+		AcceptanceProcessor nulls = new AcceptanceProcessor(containsDoubleZero(), pool, 2, 1, TimeUnit.MILLISECONDS, 8, true);
+		try {
+			nulls.onNext(null);
+			fail("null item accepted");
+		} catch (NullPointerException e) {
+			// expected
+		}
+
+		System.out.println("processor evaluation failure pass");
+	}
+
+	@Test
+	public void testRejectedBatch() throws Exception {
+		Executor rejecting = r -> {
+			throw new RejectedExecutionException("full");
+		};
+		AcceptanceProcessor processor = new AcceptanceProcessor(containsDoubleZero(), rejecting, 2, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder recorder = new Recorder(Long.MAX_VALUE);
+		processor.subscribe(recorder);
+		Upstream upstream = new Upstream();
+		processor.onSubscribe(upstream);
+		processor.onNext("0");
+		processor.onNext("00");
+		await(recorder.done);
+		assertTrue(recorder.error instanceof RejectedExecutionException);
+		assertTrue(upstream.cancelled);
+
+		// A rejected timeout flush fails the same way
+		AcceptanceProcessor timed = new AcceptanceProcessor(containsDoubleZero(), rejecting, 100, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder late = new Recorder(Long.MAX_VALUE);
+		timed.subscribe(late);
+		Upstream lateUpstream = new Upstream();
+		timed.onSubscribe(lateUpstream);
+		timed.onNext("0");
+		await(late.done);
+		assertTrue(late.error instanceof RejectedExecutionException);
+		assertTrue(lateUpstream.cancelled);
+
+		System.out.println("processor rejection pass");
+	}
+
+	@Test
+	public void testSecondSubscriberRejected() throws Exception {
+		AcceptanceProcessor processor = new AcceptanceProcessor(containsDoubleZero(), pool, 3, 1, TimeUnit.MILLISECONDS, 8, true);
+		Recorder first = new Recorder(Long.MAX_VALUE);
+		Recorder second = new Recorder(Long.MAX_VALUE);
+		processor.subscribe(first);
+		processor.subscribe(second);
+		await(second.done);
+		assertTrue(second.error instanceof IllegalStateException);
+		assertNotNull(second.subscription);
+
+		processor.onSubscribe(new Upstream());
+		processor.onNext("100");
+		processor.onComplete();
+		await(first.done);
+		assertTrue(first.completed);
+		assertEquals(1, first.results.size());
+		assertEquals(0, second.results.size());
+
+		System.out.println("processor single subscriber pass");
+	}
+
+}
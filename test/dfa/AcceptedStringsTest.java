@@ -0,0 +1,162 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import fa.dfa.AcceptedStrings;
+import fa.dfa.DFA;
+
+public class AcceptedStringsTest {
+
+	// strings over {a,b,c} that end in 'c'
+	private DFA endsInC() {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addSigma('c');
+		assertTrue(dfa.addState("p"));
+		assertTrue(dfa.addState("q"));
+		assertTrue(dfa.setStart("p"));
+		assertTrue(dfa.setFinal("q"));
+		for (String s : new String[] { "p", "q" }) {
+			assertTrue(dfa.addTransition(s, "p", 'a'));
+			assertTrue(dfa.addTransition(s, "p", 'b'));
+			assertTrue(dfa.addTransition(s, "q", 'c'));
+		}
+		return dfa;
+	}
+
+	// strings over {0,1} with no "11", with a partial transition function
+	private DFA noDoubleOne() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		assertTrue(dfa.addState("z"));
+		assertTrue(dfa.addState("o"));
+		assertTrue(dfa.setStart("z"));
+		assertTrue(dfa.setFinal("z"));
+		assertTrue(dfa.setFinal("o"));
+		assertTrue(dfa.addTransition("z", "z", '0'));
+		assertTrue(dfa.addTransition("z", "o", '1'));
+		assertTrue(dfa.addTransition("o", "z", '0'));
+		return dfa;
+	}
+
+	private List<String> bruteForce(DFA dfa, String alphabet, int n) {
+		List<String> out = new ArrayList<>();
+		int k = alphabet.length();
+		int total = (int) Math.pow(k, n);
+		for (int i = 0; i < total; i++) {
+			char[] c = new char[n];
+			int x = i;
+			for (int j = n - 1; j >= 0; j--) {
+				c[j] = alphabet.charAt(x % k);
+				x /= k;
+			}
+			String s = new String(c);
+			if (dfa.accepts(s)) out.add(s);
+		}
+		return out;
+	}
+
+	@Test
+	public void testCount() {
+		DFA dfa = endsInC();
+		assertEquals(0, dfa.countAccepted(0));
+		assertEquals(1, dfa.countAccepted(1));
+		assertEquals(3, dfa.countAccepted(2));
+		assertEquals(BigInteger.valueOf(3).pow(9), dfa.countAcceptedExact(10));
+
+		DFA fib = noDoubleOne();
+		long a = 1, b = 2;
+		for (int n = 1; n <= 80; n++) {
+			assertEquals(b, fib.countAccepted(n));
+			long c = a + b;
+			a = b;
+			b = c;
+		}
+
+		System.out.println("count pass");
+	}
+
+	@Test
+	public void testCountOverflow() {
+		DFA dfa = endsInC();
+		BigInteger expected = BigInteger.valueOf(3).pow(199);
+		assertEquals(expected, dfa.countAcceptedExact(200));
+		try {
+			dfa.countAccepted(200);
+			fail("expected overflow");
+		} catch (ArithmeticException e) {
+			// expected
+		}
+		String s = new AcceptedStrings(dfa, 200).sample(new Random(29));
+		assertEquals(200, s.length());
+		assertTrue(dfa.accepts(s));
+
+		System.out.println("count overflow pass");
+	}
+
+	@Test
+	public void testStreamMatchesBruteForce() {
+		DFA dfa = noDoubleOne();
+		for (int n = 0; n <= 10; n++) {
+			assertEquals(bruteForce(dfa, "01", n), dfa.streamAccepted(n).collect(Collectors.toList()));
+		}
+		dfa = endsInC();
+		for (int n = 0; n <= 6; n++) {
+			assertEquals(bruteForce(dfa, "abc", n), dfa.streamAccepted(n).collect(Collectors.toList()));
+		}
+
+		System.out.println("stream pass");
+	}
+
+	@Test
+	public void testSampleIsUniform() {
+		DFA dfa = noDoubleOne();
+		AcceptedStrings strings = new AcceptedStrings(dfa, 6);
+		List<String> all = bruteForce(dfa, "01", 6);
+		Random rnd = new Random(29);
+		Map<String, Integer> seen = new HashMap<>();
+		int samples = 21000;
+		for (int i = 0; i < samples; i++) {
+			String s = strings.sample(rnd);
+			assertTrue(dfa.accepts(s));
+			seen.merge(s, 1, Integer::sum);
+		}
+		assertEquals(all.size(), seen.size());
+		double expected = (double) samples / all.size();
+		for (int count : seen.values()) {
+			assertTrue(Math.abs(count - expected) < expected * 0.2);
+		}
+
+		System.out.println("sample pass");
+	}
+
+	@Test
+	public void testEmptyLanguage() {
+		DFA dfa = endsInC();
+		AcceptedStrings strings = new AcceptedStrings(dfa, 0);
+		assertEquals(0, strings.count());
+		assertEquals(0, strings.stream().count());
+		try {
+			strings.sample(new Random(29));
+			fail("expected NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+
+		System.out.println("empty language pass");
+	}
+
+}
@@ -0,0 +1,107 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import fa.dfa.ApproximateMatcher;
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+public class ApproximateMatcherTest {
+
+	private static int levenshtein(String a, String b) {
+		int[] prev = new int[b.length() + 1];
+		int[] cur = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) prev[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			cur[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int sub = prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+				cur[j] = Math.min(sub, Math.min(prev[j], cur[j - 1]) + 1);
+			}
+			int[] t = prev;
+			prev = cur;
+			cur = t;
+		}
+		return prev[b.length()];
+	}
+
+	/** Minimum distance by trying every accepted string up to |s| + maxEdits long. */
+	private static int bruteForce(DFA dfa, String s, int maxEdits) {
+		int best = Integer.MAX_VALUE;
+		for (int len = Math.max(0, s.length() - maxEdits); len <= s.length() + maxEdits; len++) {
+			List<String> words = dfa.streamAccepted(len).collect(Collectors.toList());
+			for (String w : words) best = Math.min(best, levenshtein(s, w));
+		}
+		return best <= maxEdits ? best : -1;
+	}
+
+	private DFA randomDFA(Random rnd, int states) {
+		DFA dfa = new DFA();
+		for (char c : "ab".toCharArray()) dfa.addSigma(c);
+		for (int i = 0; i < states; i++) assertTrue(dfa.addState("s" + i));
+		assertTrue(dfa.setStart("s0"));
+		for (int i = 0; i < states; i++) {
+			if (rnd.nextInt(4) == 0) assertTrue(dfa.setFinal("s" + i));
+			for (char c : "ab".toCharArray()) {
+				if (rnd.nextInt(4) != 0) assertTrue(dfa.addTransition("s" + i, "s" + rnd.nextInt(states), c));
+			}
+		}
+		return dfa;
+	}
+
+	@Test
+	public void testAgainstBruteForce() {
+		Random rnd = new Random(38);
+		for (int round = 0; round < 40; round++) {
+			DFA dfa = randomDFA(rnd, 3 + rnd.nextInt(8));
+			ApproximateMatcher matcher = new ApproximateMatcher(DFATable.compile(dfa));
+			for (int t = 0; t < 20; t++) {
+				StringBuilder sb = new StringBuilder();
+				int length = rnd.nextInt(7);
+				for (int j = 0; j < length; j++) sb.append("abc".charAt(rnd.nextInt(3)));
+				String s = sb.toString();
+				int maxEdits = rnd.nextInt(4);
+				assertEquals(s + " within " + maxEdits, bruteForce(dfa, s, maxEdits), matcher.acceptsWithin(s, maxEdits));
+				assertEquals(dfa.accepts(s), matcher.acceptsWithin(s, 0) == 0);
+			}
+		}
+
+		System.out.println("approximate brute force pass");
+	}
+
+	@Test
+	public void testDictionaryTypos() {
+		DFATable table = RegexCompiler.compileTable("apple|banana|cherry|grape|orange");
+		ApproximateMatcher matcher = new ApproximateMatcher(table);
+		assertEquals(0, matcher.acceptsWithin("banana", 2));
+		assertEquals(1, matcher.acceptsWithin("banan", 2));
+		assertEquals(1, matcher.acceptsWithin("aple", 2));
+		assertEquals(2, matcher.acceptsWithin("chery!", 2));
+		assertEquals(1, matcher.acceptsWithin("grap3", 1));
+		assertEquals(-1, matcher.acceptsWithin("kiwi", 2));
+		assertTrue(matcher.matches("oragne", 2));
+		assertFalse(matcher.matches("oragne", 1));
+
+		// long inputs stay cheap because only states within the bound are kept
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) sb.append('x');
+		assertEquals(-1, matcher.acceptsWithin(sb, 3));
+
+		try {
+			matcher.acceptsWithin("apple", -1);
+			fail("negative bound accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("approximate dictionary pass");
+	}
+
+}
@@ -0,0 +1,144 @@
+package test.dfa;
+
+import java.util.Random;
+
+import fa.dfa.DFA;
+
+/**
+ * Builds seeded random automata of a chosen shape and size. The same seed,
+ * shape, size and alphabet always give the same DFA. States are named s0,
+ * s1, ... in insertion order and s0 is the start state.
+ */
+public class AutomatonGenerator {
+
+	/** The shapes the generator can build. */
+	public enum Shape {
+		/** Each transition present with probability 3/4, to a uniform target. */
+		RANDOM,
+		/** A path s0, s1, ... on one or more symbols per step, with a few back edges. */
+		CHAIN,
+		/** Groups of k - 1 states that reach each other in one step, linked in a ring by the last symbol. */
+		CLIQUE,
+		/** One or two transitions per state, however wide the alphabet. */
+		SPARSE,
+		/** Every transition present except about one in a hundred. */
+		NEAR_TOTAL
+	}
+
+	private final Random rnd;
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param seed The seed for every choice the generator makes.
+	 */
+	public AutomatonGenerator(long seed) {
+		this.rnd = new Random(seed);
+	}
+
+	/**
+	 * Returns an alphabet of the given size: lowercase letters, digits, then
+	 * Greek and CJK characters, so wide alphabets need multi-byte UTF-8.
+	 *
+	 * @param size The number of symbols.
+	 * @return The alphabet, without repeats.
+	 */
+	public static String alphabet(int size) {
+		StringBuilder sb = new StringBuilder(size);
+		String ascii = "abcdefghijklmnopqrstuvwxyz0123456789";
+		for (int i = 0; i < size; i++) {
+			if (i < ascii.length()) sb.append(ascii.charAt(i));
+			else if (i < ascii.length() + 50) sb.append((char) (0x3B1 + i - ascii.length()));
+			else sb.append((char) (0x4E00 + i - ascii.length() - 50));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Builds a DFA.
+	 *
+	 * @param shape The shape.
+	 * @param states The number of states, at least 1.
+	 * @param alphabet The symbols, at least 2 for CLIQUE.
+	 * @return The DFA.
+	 */
+	public DFA generate(Shape shape, int states, String alphabet) {
+		int k = alphabet.length();
+		if (states < 1) throw new IllegalArgumentException("need at least one state");
+		if (shape == Shape.CLIQUE && k < 2) throw new IllegalArgumentException("CLIQUE needs two symbols");
+		DFA dfa = new DFA();
+		for (int a = 0; a < k; a++) dfa.addSigma(alphabet.charAt(a));
+		String[] names = new String[states];
+		for (int i = 0; i < states; i++) {
+			names[i] = "s" + i;
+			dfa.addState(names[i]);
+		}
+		dfa.setStart(names[0]);
+
+		switch (shape) {
+		case RANDOM:
+			for (int i = 0; i < states; i++) {
+				for (int a = 0; a < k; a++) {
+					if (rnd.nextInt(4) != 0) dfa.addTransition(names[i], names[rnd.nextInt(states)], alphabet.charAt(a));
+				}
+			}
+			markFinal(dfa, names, 4);
+			break;
+		case CHAIN:
+			for (int i = 0; i + 1 < states; i++) {
+				int first = rnd.nextInt(k);
+				dfa.addTransition(names[i], names[i + 1], alphabet.charAt(first));
+				for (int a = 0; a < k; a++) {
+					if (a == first) continue;
+					int r = rnd.nextInt(16);
+					if (r == 0) dfa.addTransition(names[i], names[i + 1], alphabet.charAt(a));
+					else if (r == 1) dfa.addTransition(names[i], names[rnd.nextInt(i + 1)], alphabet.charAt(a));
+				}
+			}
+			markFinal(dfa, names, 16);
+			dfa.setFinal(names[states - 1]);
+			break;
+		case CLIQUE:
+			int size = k - 1;
+			int groups = (states + size - 1) / size;
+			for (int i = 0; i < states; i++) {
+				int group = i / size;
+				int base = group * size;
+				int members = Math.min(size, states - base);
+				for (int a = 0; a < size; a++) {
+					dfa.addTransition(names[i], names[base + a % members], alphabet.charAt(a));
+				}
+				int nextBase = (group + 1) % groups * size;
+				dfa.addTransition(names[i], names[nextBase], alphabet.charAt(k - 1));
+			}
+			markFinal(dfa, names, 8);
+			break;
+		case SPARSE:
+			for (int i = 0; i < states; i++) {
+				int edges = 1 + rnd.nextInt(2);
+				for (int e = 0; e < edges; e++) {
+					dfa.addTransition(names[i], names[rnd.nextInt(states)], alphabet.charAt(rnd.nextInt(k)));
+				}
+			}
+			markFinal(dfa, names, 3);
+			break;
+		case NEAR_TOTAL:
+			for (int i = 0; i < states; i++) {
+				for (int a = 0; a < k; a++) {
+					if (rnd.nextInt(100) != 0) dfa.addTransition(names[i], names[rnd.nextInt(states)], alphabet.charAt(a));
+				}
+			}
+			markFinal(dfa, names, 2);
+			break;
+		default:
+			throw new AssertionError(shape);
+		}
+		return dfa;
+	}
+
+	private void markFinal(DFA dfa, String[] names, int oneIn) {
+		for (String name : names) {
+			if (rnd.nextInt(oneIn) == 0) dfa.setFinal(name);
+		}
+	}
+}
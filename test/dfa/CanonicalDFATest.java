@@ -0,0 +1,175 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.CanonicalDFA;
+import fa.dfa.DFA;
+import fa.dfa.DFAInterner;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+public class CanonicalDFATest {
+
+	private static final String SIGMA = "abc";
+
+	private DFA randomDFA(Random rnd, int states) {
+		DFA dfa = new DFA();
+		for (char c : SIGMA.toCharArray()) dfa.addSigma(c);
+		for (int i = 0; i < states; i++) assertTrue(dfa.addState("s" + i));
+		assertTrue(dfa.setStart("s0"));
+		for (int i = 0; i < states; i++) {
+			if (rnd.nextInt(4) == 0) assertTrue(dfa.setFinal("s" + i));
+			for (char c : SIGMA.toCharArray()) {
+				if (rnd.nextInt(5) != 0) assertTrue(dfa.addTransition("s" + i, "s" + rnd.nextInt(states), c));
+			}
+		}
+		return dfa;
+	}
+
+	/**
+	 * Rebuilds a DFA with shuffled state order, fresh names, reversed sigma,
+	 * and an extra unreachable state, dead state and unused symbol.
+	 */
+	private DFA scramble(DFA dfa, Random rnd) {
+		DFATable t = DFATable.compile(dfa);
+		int n = t.getStateCount();
+		List<Integer> order = new ArrayList<>();
+		for (int q = 0; q < n; q++) order.add(q);
+		Collections.shuffle(order, rnd);
+		DFA copy = new DFA();
+		for (int a = t.getSymbolCount() - 1; a >= 0; a--) copy.addSigma(t.getSymbol(a));
+		copy.addSigma('z');
+		for (int q : order) copy.addState("x" + q);
+		copy.addState("unreachable");
+		copy.addState("dead");
+		copy.setFinal("unreachable");
+		copy.setStart("x" + t.getStartState());
+		for (int q = 0; q < n; q++) {
+			if (t.isFinal(q)) copy.setFinal("x" + q);
+			for (int a = 0; a < t.getSymbolCount(); a++) {
+				int to = t.next(q, a);
+				if (to != DFATable.NONE) copy.addTransition("x" + q, "x" + to, t.getSymbol(a));
+			}
+		}
+		copy.addTransition("x" + t.getStartState(), "dead", 'z');
+		copy.addTransition("dead", "dead", 'a');
+		copy.addTransition("unreachable", "x" + t.getStartState(), 'z');
+		return copy;
+	}
+
+	private String randomInput(Random rnd) {
+		StringBuilder sb = new StringBuilder();
+		int length = rnd.nextInt(12);
+		for (int j = 0; j < length; j++) sb.append("abcz".charAt(rnd.nextInt(4)));
+		return sb.toString();
+	}
+
+	@Test
+	public void testScrambledCopiesAreEqual() {
+		Random rnd = new Random(36);
+		for (int round = 0; round < 30; round++) {
+			DFA dfa = randomDFA(rnd, 5 + rnd.nextInt(60));
+			DFA copy = scramble(dfa, rnd);
+			CanonicalDFA c1 = CanonicalDFA.of(dfa);
+			CanonicalDFA c2 = CanonicalDFA.of(copy);
+			assertEquals(c1, c2);
+			assertEquals(c1.hashCode(), c2.hashCode());
+			assertEquals(c1.getHashHex(), c2.getHashHex());
+			assertTrue(c1.getTable().getStateCount() <= DFATable.compile(dfa).getStateCount());
+			for (int i = 0; i < 300; i++) {
+				String s = randomInput(rnd);
+				assertEquals(s, dfa.accepts(s), c1.getTable().accepts(s));
+			}
+		}
+
+		System.out.println("canonical scramble pass");
+	}
+
+	@Test
+	public void testEquivalentRegexes() {
+		CanonicalDFA star = CanonicalDFA.of(RegexCompiler.compile("(a|b)*"));
+		assertEquals(star, CanonicalDFA.of(RegexCompiler.compile("(a*b*)*")));
+		assertEquals(star, CanonicalDFA.of(RegexCompiler.compile("(b|a)*a*")));
+		assertEquals(1, star.getTable().getStateCount());
+		assertNotEquals(star, CanonicalDFA.of(RegexCompiler.compile("(a|b)+")));
+		assertNotEquals(star, CanonicalDFA.of(RegexCompiler.compile("(a|c)*")));
+
+		// a DFA with no accepting path reduces to the empty language
+		DFA empty = new DFA();
+		empty.addSigma('a');
+		empty.addState("p");
+		empty.setStart("p");
+		empty.addTransition("p", "p", 'a');
+		CanonicalDFA none = CanonicalDFA.of(empty);
+		assertEquals(0, none.getTable().getStateCount());
+		assertEquals(none, CanonicalDFA.of(new DFA()));
+
+		System.out.println("canonical regex pass");
+	}
+
+	@Test
+	public void testLongChainsMinimize() {
+		// Two interleaved copies of a 50000-step path collapse into one path
+		int n = 50_000;
+		DFA twin = new DFA();
+		twin.addSigma('a');
+		twin.addSigma('b');
+		for (int i = 0; i < n; i++) {
+			twin.addState("l" + i);
+			twin.addState("r" + i);
+		}
+		twin.setStart("l0");
+		twin.setFinal("l" + (n - 1));
+		twin.setFinal("r" + (n - 1));
+		for (int i = 0; i + 1 < n; i++) {
+			twin.addTransition("l" + i, "r" + (i + 1), 'a');
+			twin.addTransition("l" + i, "l" + (i + 1), 'b');
+			twin.addTransition("r" + i, "l" + (i + 1), 'a');
+			twin.addTransition("r" + i, "r" + (i + 1), 'b');
+		}
+		CanonicalDFA path = CanonicalDFA.of(twin);
+		assertEquals(n, path.getTable().getStateCount());
+		assertTrue(path.getTable().accepts("ab".repeat((n - 1) / 2) + "a".repeat((n - 1) % 2)));
+		assertFalse(path.getTable().accepts("ab".repeat(n / 2)));
+
+		// A cycle of 3 * 7 states, final every 7th, counts lengths mod 7
+		DFA cycle = new DFA();
+		cycle.addSigma('a');
+		for (int i = 0; i < 21; i++) cycle.addState("c" + i);
+		cycle.setStart("c0");
+		for (int i = 0; i < 21; i++) {
+			if (i % 7 == 0) cycle.setFinal("c" + i);
+			cycle.addTransition("c" + i, "c" + (i + 1) % 21, 'a');
+		}
+		assertEquals(7, CanonicalDFA.of(cycle).getTable().getStateCount());
+
+		System.out.println("long chain minimize pass");
+	}
+
+	@Test
+	public void testInternerSharesTables() {
+		Random rnd = new Random(36);
+		DFAInterner interner = new DFAInterner();
+		List<DFA> languages = new ArrayList<>();
+		for (int i = 0; i < 5; i++) languages.add(randomDFA(rnd, 20 + i));
+		DFATable[] shared = new DFATable[languages.size()];
+		for (int round = 0; round < 50; round++) {
+			int i = round % languages.size();
+			DFATable t = interner.intern(scramble(languages.get(i), rnd));
+			if (shared[i] == null) shared[i] = t;
+			assertSame(shared[i], t);
+		}
+		assertEquals(languages.size(), interner.size());
+		assertEquals(50, interner.getRequests());
+
+		System.out.println("interner pass");
+	}
+
+}
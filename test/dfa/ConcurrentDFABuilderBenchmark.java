@@ -0,0 +1,96 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import fa.dfa.ConcurrentDFABuilder;
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+
+/**
+ * Measures how loading a large automaton scales with the number of loader
+ * threads. Each loader adds its share of the states, waits for the others,
+ * then adds the transitions of its states; the load time covers both phases
+ * and the final build is timed separately. The single-threaded {@link DFA}
+ * is loaded the same way as a baseline, and every builder run reports its
+ * speedup over the one-thread run of the same round. Scaling needs as many
+ * idle cores as loaders.
+ *
+ * Usage: java test.dfa.ConcurrentDFABuilderBenchmark [states] [symbols] [maxThreads]
+ */
+public class ConcurrentDFABuilderBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int states = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int symbols = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+
+		String alphabet = AutomatonGenerator.alphabet(symbols);
+		DFATable table = DFATable.compile(new AutomatonGenerator(27).generate(AutomatonGenerator.Shape.RANDOM, states, alphabet));
+		String[] names = new String[states];
+		for (int q = 0; q < states; q++) names[q] = table.getStateName(q);
+		long transitions = 0;
+		for (int q = 0; q < states; q++) {
+			for (int a = 0; a < symbols; a++) {
+				if (table.next(q, a) != DFATable.NONE) transitions++;
+			}
+		}
+		System.out.printf("%d states, %d symbols, %d transitions, %d cpus%n", states, symbols, transitions,
+				Runtime.getRuntime().availableProcessors());
+
+		for (int round = 0; round < 3; round++) {
+			long t0 = System.nanoTime();
+			DFA dfa = new DFA();
+			for (int a = 0; a < symbols; a++) dfa.addSigma(table.getSymbol(a));
+			for (String name : names) dfa.addState(name);
+			for (int q = 0; q < states; q++) {
+				for (int a = 0; a < symbols; a++) {
+					int to = table.next(q, a);
+					if (to != DFATable.NONE) dfa.addTransition(names[q], names[to], table.getSymbol(a));
+				}
+			}
+			report("DFA", 1, System.nanoTime() - t0, 0, transitions);
+
+			long single = 0;
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				ConcurrentDFABuilder builder = new ConcurrentDFABuilder();
+				for (int a = 0; a < symbols; a++) builder.addSigma(table.getSymbol(a));
+				CyclicBarrier statesAdded = new CyclicBarrier(threads);
+				List<Thread> loaders = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					int first = t;
+					int step = threads;
+					loaders.add(new Thread(() -> {
+						for (int q = first; q < states; q += step) builder.addState(names[q]);
+						try {
+							statesAdded.await();
+						} catch (Exception e) {
+							throw new IllegalStateException(e);
+						}
+						for (int q = first; q < states; q += step) {
+							for (int a = 0; a < symbols; a++) {
+								int to = table.next(q, a);
+								if (to != DFATable.NONE) builder.addTransition(names[q], names[to], table.getSymbol(a));
+							}
+						}
+					}));
+				}
+				t0 = System.nanoTime();
+				for (Thread loader : loaders) loader.start();
+				for (Thread loader : loaders) loader.join();
+				long load = System.nanoTime() - t0;
+				if (threads == 1) single = load;
+				t0 = System.nanoTime();
+				builder.build();
+				report("ConcurrentDFABuilder", threads, load, System.nanoTime() - t0, transitions);
+				System.out.printf("%-22s %2d threads: load speedup over 1 thread %.2fx%n", "", threads, (double) single / load);
+			}
+		}
+	}
+
+	private static void report(String name, int threads, long loadNanos, long buildNanos, long transitions) {
+		System.out.printf("%-22s %2d threads: load %7.1f ms (%6.2f M transitions/s), build %7.1f ms%n", name, threads,
+				loadNanos / 1e6, transitions / (loadNanos / 1e9) / 1e6, buildNanos / 1e6);
+	}
+}
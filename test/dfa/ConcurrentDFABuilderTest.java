@@ -0,0 +1,125 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fa.dfa.ConcurrentDFABuilder;
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+
+public class ConcurrentDFABuilderTest {
+
+	private static final int THREADS = 8;
+
+	/**
+	 * Loads a compiled DFA into the builder, each thread taking every
+	 * threads-th state starting from its own index.
+	 */
+	private static void load(ConcurrentDFABuilder builder, DFATable table, int threads) throws Exception {
+		int n = table.getStateCount();
+		int k = table.getSymbolCount();
+		for (int a = 0; a < k; a++) builder.addSigma(table.getSymbol(a));
+		for (int q = 0; q < n; q++) builder.addState(table.getStateName(q));
+		List<Thread> loaders = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int first = t;
+			Thread loader = new Thread(() -> {
+				for (int q = first; q < n; q += threads) {
+					if (table.isFinal(q)) builder.setFinal(table.getStateName(q));
+					for (int a = 0; a < k; a++) {
+						int to = table.next(q, a);
+						if (to != DFATable.NONE) builder.addTransition(table.getStateName(q), table.getStateName(to), table.getSymbol(a));
+					}
+				}
+			});
+			loader.setUncaughtExceptionHandler((th, e) -> {
+				synchronized (errors) {
+					errors.add(e);
+				}
+			});
+			loaders.add(loader);
+			loader.start();
+		}
+		for (Thread loader : loaders) loader.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		builder.setStart(table.getStateName(table.getStartState()));
+	}
+
+	@Test
+	public void testDuplicateAddStateWinsOnce() throws Exception {
+		ConcurrentDFABuilder builder = new ConcurrentDFABuilder();
+		for (int round = 0; round < 200; round++) {
+			String name = "s" + round;
+			CyclicBarrier barrier = new CyclicBarrier(THREADS);
+			AtomicInteger added = new AtomicInteger();
+			Thread[] threads = new Thread[THREADS];
+			for (int t = 0; t < THREADS; t++) {
+				threads[t] = new Thread(() -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					if (builder.addState(name)) added.incrementAndGet();
+				});
+				threads[t].start();
+			}
+			for (Thread t : threads) t.join();
+			assertEquals(name, 1, added.get());
+		}
+
+		System.out.println("concurrent duplicate addState pass");
+	}
+
+	@Test
+	public void testConcurrentBuildMatchesSequential() throws Exception {
+		String alphabet = AutomatonGenerator.alphabet(6);
+		for (AutomatonGenerator.Shape shape : AutomatonGenerator.Shape.values()) {
+			DFA dfa = new AutomatonGenerator(27).generate(shape, 2000, alphabet);
+			DFATable table = DFATable.compile(dfa);
+
+			ConcurrentDFABuilder sequential = new ConcurrentDFABuilder();
+			load(sequential, table, 1);
+			String expected = sequential.build().toString();
+
+			for (int run = 0; run < 3; run++) {
+				ConcurrentDFABuilder concurrent = new ConcurrentDFABuilder(4);
+				load(concurrent, table, THREADS);
+				DFA built = concurrent.build();
+				assertEquals(shape + " run " + run, expected, built.toString());
+				assertEquals(shape + " build is not repeatable", expected, concurrent.build().toString());
+				for (String s : new WorkloadGenerator(table, alphabet, run).generate(300, 40)) {
+					assertEquals(shape + " on " + s, dfa.accepts(s), built.accepts(s));
+				}
+			}
+		}
+
+		System.out.println("concurrent build pass");
+	}
+
+	@Test
+	public void testStripes() {
+		for (int stripes : new int[] { 1, 2, 3, 64, 1 << 20, Integer.MAX_VALUE }) {
+			ConcurrentDFABuilder builder = new ConcurrentDFABuilder(stripes);
+			builder.addSigma('0');
+			assertTrue(builder.addState("a"));
+			assertTrue(builder.addTransition("a", "a", '0'));
+		}
+		try {
+			new ConcurrentDFABuilder(0);
+			fail("zero stripes accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("stripes pass");
+	}
+
+}
@@ -0,0 +1,105 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.DFAEvents;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class DFAEventsTest {
+
+	private List<RecordedEvent> record(boolean enable, Runnable work) throws IOException {
+		Path file = Files.createTempFile("dfa-events", ".jfr");
+		try (Recording recording = new Recording()) {
+			if (enable) {
+				for (String name : new String[] { "fa.dfa.Compile", "fa.dfa.Copy", "fa.dfa.Dump", "fa.dfa.Accept" }) {
+					recording.enable(name);
+				}
+			}
+			recording.start();
+			work.run();
+			recording.stop();
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file).stream()
+					.filter(e -> e.getEventType().getName().startsWith("fa.dfa."))
+					.collect(Collectors.toList());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static long count(List<RecordedEvent> events, String name, String operation) {
+		return events.stream()
+				.filter(e -> e.getEventType().getName().equals(name))
+				.filter(e -> operation == null || operation.equals(e.getString("operation")))
+				.count();
+	}
+
+	@Test
+	public void testEventsWhenEnabled() throws IOException {
+		int oldLength = DFAEvents.getAcceptMinLength();
+		DFAEvents.setAcceptMinLength(1000);
+		try {
+			StringBuilder longInput = new StringBuilder();
+			for (int i = 0; i < 5000; i++) longInput.append('a');
+			List<RecordedEvent> events = record(true, () -> {
+				DFA dfa = RegexCompiler.compile("a*b?");
+				DFATable table = DFATable.compile(dfa);
+				dfa.swap('a', 'b');
+				dfa.toString();
+				assertTrue(table.accepts(longInput));
+				assertTrue(table.accepts("aab"));
+				assertTrue(dfa.accepts(longInput.toString()));
+			});
+
+			assertEquals(1, count(events, "fa.dfa.Compile", "RegexCompiler.compile"));
+			assertEquals(1, count(events, "fa.dfa.Compile", "DFATable.compile"));
+			assertEquals(1, count(events, "fa.dfa.Copy", "DFA.swap"));
+			// the regex compile event covers its own table-to-DFA conversion
+			assertEquals(0, count(events, "fa.dfa.Copy", "DFATable.toDFA"));
+			assertEquals(1, count(events, "fa.dfa.Dump", null));
+			// the short input is under both thresholds
+			assertEquals(2, count(events, "fa.dfa.Accept", null));
+
+			RecordedEvent compile = events.stream()
+					.filter(e -> "DFATable.compile".equals(e.getString("operation")))
+					.findFirst().get();
+			assertEquals(2, compile.getInt("states"));
+			assertEquals(2, compile.getLong("transitions"));
+			RecordedEvent accept = events.stream()
+					.filter(e -> e.getEventType().getName().equals("fa.dfa.Accept"))
+					.findFirst().get();
+			assertEquals(5000, accept.getInt("length"));
+			assertTrue(accept.getBoolean("accepted"));
+		} finally {
+			DFAEvents.setAcceptMinLength(oldLength);
+		}
+
+		System.out.println("jfr enabled pass");
+	}
+
+	@Test
+	public void testDisabledByDefault() throws IOException {
+		List<RecordedEvent> events = record(false, () -> {
+			DFA dfa = RegexCompiler.compile("(a|b)*c");
+			DFATable.compile(dfa).accepts("ababc");
+			dfa.swap('a', 'c').toString();
+		});
+		assertTrue(events.isEmpty());
+
+		System.out.println("jfr disabled pass");
+	}
+
+}
@@ -0,0 +1,219 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.DFACodec;
+import fa.dfa.DFARegistry;
+import fa.dfa.DFATable;
+
+public class DFARegistryTest {
+
+	private static final String SIGMA = "abc";
+
+	private DFA randomDFA(Random rnd, int states) {
+		DFA dfa = new DFA();
+		for (char c : SIGMA.toCharArray()) dfa.addSigma(c);
+		for (int i = 0; i < states; i++) assertTrue(dfa.addState("q" + i));
+		assertTrue(dfa.setStart("q0"));
+		for (int i = 0; i < states; i++) {
+			if (rnd.nextInt(3) == 0) assertTrue(dfa.setFinal("q" + i));
+			for (char c : SIGMA.toCharArray()) {
+				if (rnd.nextInt(6) != 0) assertTrue(dfa.addTransition("q" + i, "q" + rnd.nextInt(states), c));
+			}
+		}
+		return dfa;
+	}
+
+	private String randomInput(Random rnd) {
+		StringBuilder sb = new StringBuilder();
+		int length = rnd.nextInt(10);
+		for (int j = 0; j < length; j++) sb.append(SIGMA.charAt(rnd.nextInt(SIGMA.length())));
+		return sb.toString();
+	}
+
+	@Test
+	public void testCodecRoundTrip() {
+		Random rnd = new Random(35);
+		DFA dfa = randomDFA(rnd, 200);
+		DFATable table = DFATable.compile(dfa);
+		byte[] bytes = DFACodec.encode(dfa);
+		DFATable decoded = DFACodec.decode(bytes);
+		assertEquals(table.getStateCount(), decoded.getStateCount());
+		assertEquals(table.getStartState(), decoded.getStartState());
+		for (int q = 0; q < table.getStateCount(); q++) {
+			assertEquals(table.getStateName(q), decoded.getStateName(q));
+			assertEquals(table.isFinal(q), decoded.isFinal(q));
+			for (int a = 0; a < table.getSymbolCount(); a++) assertEquals(table.next(q, a), decoded.next(q, a));
+		}
+		assertTrue(bytes.length < table.footprintBytes());
+
+		try {
+			DFACodec.decode(Arrays.copyOf(bytes, bytes.length - 1));
+			fail("truncated encoding decoded");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("codec round trip pass");
+	}
+
+	private static byte[] varints(int... values) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int v : values) {
+			while ((v & ~0x7F) != 0) {
+				out.write((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			out.write(v);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testCodecRejectsBadCounts() {
+		int magic = 0xDFA1;
+		byte[][] bad = {
+				// negative and huge symbol counts
+				varints(magic, -1), varints(magic, Integer.MAX_VALUE), varints(magic, 1 << 28, 'a'),
+				// negative and huge state counts
+				varints(magic, 1, 'a', -1, 0), varints(magic, 1, 'a', Integer.MAX_VALUE, 0),
+				// states times symbols larger than the bytes left, and past int range
+				varints(magic, 2, 'a', 'b', 3, 1, 0, 0, 0, 0, 1, 1),
+				varints(magic, 3, 'a', 'b', 'c', 12, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0),
+				// symbols outside char range or repeated
+				varints(magic, 2, 0x10061, 'a', 1, 1, 0, 0, 0, 0), varints(magic, 1, -1, 1, 1, 0, 0, 0),
+				varints(magic, 2, 'a', 'a', 1, 1, 0, 0, 0, 0) };
+		DFATable valid = DFACodec.decode(varints(magic, 2, 'b', 'a', 1, 1, 0, 0, 0, 0));
+		assertEquals(2, valid.getSymbolCount());
+		for (byte[] bytes : bad) {
+			try {
+				DFACodec.decode(bytes);
+				fail("decoded " + Arrays.toString(bytes));
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		System.out.println("codec bad counts pass");
+	}
+
+	@Test
+	public void testEvictionWithinBudget() {
+		Random rnd = new Random(35);
+		List<DFA> dfas = new ArrayList<>();
+		for (int i = 0; i < 20; i++) dfas.add(randomDFA(rnd, 100));
+		long one = DFATable.compile(dfas.get(0)).footprintBytes();
+		DFARegistry registry = new DFARegistry(one * 12);
+		for (int i = 0; i < dfas.size(); i++) registry.register("t" + i, dfas.get(i));
+
+		for (int round = 0; round < 2000; round++) {
+			int i = rnd.nextInt(dfas.size());
+			String s = randomInput(rnd);
+			assertEquals(dfas.get(i).accepts(s), registry.accepts("t" + i, s));
+			assertTrue(registry.getStats().getCachedBytes() <= one * 12);
+		}
+		DFARegistry.Stats stats = registry.getStats();
+		assertEquals(20, stats.getRegistered());
+		assertTrue(stats.getEvictions() > 0);
+		assertTrue(stats.getHits() > 0);
+		assertEquals(2000, stats.getHits() + stats.getMisses());
+		assertTrue(stats.getCached() < 20);
+
+		assertNull(registry.get("missing"));
+		assertTrue(registry.remove("t0"));
+		assertFalse(registry.remove("t0"));
+		assertNull(registry.get("t0"));
+
+		System.out.println("registry eviction pass: " + stats);
+	}
+
+	@Test
+	public void testReplaceInvalidatesCachedTable() {
+		Random rnd = new Random(35);
+		DFARegistry registry = new DFARegistry(1 << 20);
+		DFA first = randomDFA(rnd, 50);
+		DFA second = randomDFA(rnd, 50);
+		registry.register("t", first);
+		DFATable before = registry.get("t");
+		registry.register("t", second);
+		assertNotSame(before, registry.get("t"));
+		for (int i = 0; i < 500; i++) {
+			String s = randomInput(rnd);
+			assertEquals(second.accepts(s), registry.accepts("t", s));
+		}
+
+		System.out.println("registry replace pass");
+	}
+
+	@Test
+	public void testConcurrentMissesShareLoad() throws InterruptedException {
+		Random rnd = new Random(35);
+		DFARegistry registry = new DFARegistry(Long.MAX_VALUE);
+		registry.register("big", randomDFA(rnd, 20000));
+		int threads = 8;
+		CountDownLatch go = new CountDownLatch(1);
+		DFATable[] seen = new DFATable[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			workers[t] = new Thread(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				seen[id] = registry.get("big");
+			});
+			workers[t].start();
+		}
+		go.countDown();
+		for (Thread w : workers) w.join();
+		for (DFATable t : seen) assertSame(seen[0], t);
+		assertEquals(1, registry.getStats().getLoads());
+
+		System.out.println("registry shared load pass");
+	}
+
+	@Test
+	public void testConcurrentLoadFailureIsNotWrapped() throws InterruptedException {
+		Random rnd = new Random(35);
+		byte[] good = DFACodec.encode(randomDFA(rnd, 20000));
+		DFARegistry registry = new DFARegistry(Long.MAX_VALUE);
+		registry.registerEncoded("broken", Arrays.copyOf(good, good.length - 1));
+		int threads = 8;
+		for (int round = 0; round < 3; round++) {
+			CountDownLatch go = new CountDownLatch(1);
+			Throwable[] thrown = new Throwable[threads];
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				int id = t;
+				workers[t] = new Thread(() -> {
+					try {
+						go.await();
+						registry.get("broken");
+					} catch (Throwable e) {
+						thrown[id] = e;
+					}
+				});
+				workers[t].start();
+			}
+			go.countDown();
+			for (Thread w : workers) w.join();
+			for (Throwable e : thrown) assertTrue(String.valueOf(e), e instanceof IllegalArgumentException);
+		}
+		assertEquals(0, registry.getStats().getLoads());
+
+		System.out.println("registry load failure pass");
+	}
+
+}
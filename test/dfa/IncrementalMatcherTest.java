@@ -0,0 +1,166 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.IncrementalMatcher;
+
+public class IncrementalMatcherTest {
+
+	// accepts strings over {0,1,2} with an even number of 1s and no "22"
+	private DFA dfa() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addSigma('2');
+
+		assertTrue(dfa.addState("e"));
+		assertTrue(dfa.addState("o"));
+		assertTrue(dfa.addState("e2"));
+		assertTrue(dfa.addState("o2"));
+		assertTrue(dfa.setStart("e"));
+		assertTrue(dfa.setFinal("e"));
+		assertTrue(dfa.setFinal("e2"));
+
+		assertTrue(dfa.addTransition("e", "e", '0'));
+		assertTrue(dfa.addTransition("e", "o", '1'));
+		assertTrue(dfa.addTransition("e", "e2", '2'));
+		assertTrue(dfa.addTransition("o", "o", '0'));
+		assertTrue(dfa.addTransition("o", "e", '1'));
+		assertTrue(dfa.addTransition("o", "o2", '2'));
+		assertTrue(dfa.addTransition("e2", "e", '0'));
+		assertTrue(dfa.addTransition("e2", "o", '1'));
+		assertTrue(dfa.addTransition("o2", "o", '0'));
+		assertTrue(dfa.addTransition("o2", "e", '1'));
+
+		return dfa;
+	}
+
+	private String randomText(Random rnd, int length, String alphabet) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testReset() {
+		DFA dfa = dfa();
+		IncrementalMatcher m = new IncrementalMatcher(dfa, 8);
+
+		assertTrue(m.accepts());
+		assertTrue(m.reset("0110"));
+		assertFalse(m.reset("010"));
+		assertFalse(m.reset("0220"));
+		assertTrue(m.reset("020"));
+
+		System.out.println("incremental reset pass");
+	}
+
+	@Test
+	public void testEditsMatchFullScan() {
+		DFA dfa = dfa();
+		Random rnd = new Random(26);
+		IncrementalMatcher m = new IncrementalMatcher(dfa, 16);
+		StringBuilder doc = new StringBuilder(randomText(rnd, 2000, "0001"));
+		assertEquals(dfa.accepts(doc.toString()), m.reset(doc));
+
+		for (int i = 0; i < 2000; i++) {
+			int pos = rnd.nextInt(doc.length() + 1);
+			int removed = rnd.nextInt(Math.min(5, doc.length() - pos) + 1);
+			String inserted = randomText(rnd, rnd.nextInt(5), i % 50 == 0 ? "0122" : "0001");
+			doc.replace(pos, pos + removed, inserted);
+			assertEquals(dfa.accepts(doc.toString()), m.replace(pos, removed, inserted));
+			assertEquals(doc.toString(), m.getDocument());
+			assertCheckpointsBounded(m, doc.length(), 16, false);
+		}
+
+		System.out.println("incremental edits pass");
+	}
+
+	@Test
+	public void testRescanIsLocal() {
+		DFA dfa = dfa();
+		IncrementalMatcher m = new IncrementalMatcher(dfa, 64);
+		StringBuilder doc = new StringBuilder();
+		for (int i = 0; i < 10000; i++) doc.append("0101");
+		assertTrue(m.reset(doc));
+		assertEquals(40000, m.getLastScanned());
+
+		// flipping the parity keeps the state different until the end
+		assertFalse(m.replace(20000, 1, "1"));
+		assertTrue(m.getLastScanned() <= 20000 + 64);
+
+		// an edit that preserves the state converges at the next old checkpoint
+		assertFalse(m.replace(30000, 1, "00"));
+		assertTrue(m.getLastScanned() <= 3 * 64);
+		assertFalse(m.insert(100, "0"));
+		assertTrue(m.getLastScanned() <= 3 * 64);
+		assertTrue(m.delete(20000, 1));
+
+		System.out.println("incremental locality pass");
+	}
+
+	// A document the DFA rejects partway keeps no checkpoints past that point, so only live ones are dense
+	private void assertCheckpointsBounded(IncrementalMatcher m, int length, int interval, boolean live) {
+		int count = m.getCheckpointCount();
+		assertTrue(count + " checkpoints for " + length, count <= 2 * length / interval + 2);
+		if (live) assertTrue(count + " checkpoints for " + length, (long) count * 2 * interval >= length);
+	}
+
+	@Test
+	public void testCheckpointsStayBounded() {
+		DFA dfa = dfa();
+		Random rnd = new Random(26);
+		IncrementalMatcher m = new IncrementalMatcher(dfa, 64);
+		StringBuilder doc = new StringBuilder(randomText(rnd, 100000, "0001"));
+		m.reset(doc);
+		assertEquals(100000 / 64 + 1, m.getCheckpointCount());
+
+		// Repeated typing at one spot must not leave a checkpoint behind per keystroke
+		boolean expected = dfa.accepts(doc.toString());
+		for (int i = 0; i < 10000; i++) {
+			doc.insert(100, '0');
+			assertEquals(expected, m.insert(100, "0"));
+			assertTrue(m.getLastScanned() <= 3 * 64);
+		}
+		assertCheckpointsBounded(m, doc.length(), 64, true);
+
+		// Deleting it again, and edits that jump around the document
+		for (int i = 0; i < 10000; i++) {
+			doc.delete(100, 101);
+			assertEquals(expected, m.delete(100, 1));
+		}
+		for (int i = 0; i < 2000; i++) {
+			int pos = rnd.nextInt(doc.length() + 1);
+			int removed = rnd.nextInt(Math.min(200, doc.length() - pos) + 1);
+			String inserted = randomText(rnd, rnd.nextInt(200), "0001");
+			doc.replace(pos, pos + removed, inserted);
+			assertEquals(dfa.accepts(doc.toString()), m.replace(pos, removed, inserted));
+			assertCheckpointsBounded(m, doc.length(), 64, true);
+		}
+		assertEquals(doc.toString(), m.getDocument());
+
+		System.out.println("incremental checkpoint bound pass");
+	}
+
+	@Test
+	public void testDeadState() {
+		DFA dfa = dfa();
+		IncrementalMatcher m = new IncrementalMatcher(dfa, 4);
+		assertFalse(m.reset("0000220000110000"));
+		assertFalse(m.insert(12, "1"));
+		assertTrue(m.getLastScanned() == 0);
+		assertFalse(m.replace(12, 1, ""));
+		assertTrue(m.replace(4, 1, "0"));
+		assertTrue(m.accepts());
+
+		System.out.println("incremental dead state pass");
+	}
+
+}
@@ -0,0 +1,90 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import fa.dfa.DFATable;
+import fa.dfa.PackedDFATable;
+import fa.dfa.StateLayout;
+
+public class PackedDFATableTest {
+
+	private static final String ALPHABET = AutomatonGenerator.alphabet(3);
+
+	private DFATable random(int states, long seed) {
+		return DFATable.compile(new AutomatonGenerator(seed).generate(AutomatonGenerator.Shape.RANDOM, states, ALPHABET));
+	}
+
+	private void assertSameLanguage(String message, DFATable expected, List<String> inputs, DFATable actual) {
+		for (String s : inputs) assertEquals(message + " on " + s, expected.accepts(s), actual.accepts(s));
+	}
+
+	@Test
+	public void testEntryWidths() {
+		int[][] cases = { { 1, 1 }, { 255, 1 }, { 256, 2 }, { 65535, 2 }, { 65536, 4 } };
+		for (int[] c : cases) {
+			DFATable table = random(c[0], c[0]);
+			PackedDFATable packed = PackedDFATable.pack(table);
+			assertEquals(c[0] + " states", c[1], packed.getEntryWidth());
+			assertEquals(c[0], packed.getStateCount());
+			for (String s : new WorkloadGenerator(table, ALPHABET, c[0]).generate(2000, 64)) {
+				assertEquals(c[0] + " states on " + s, table.accepts(s), packed.accepts(s));
+			}
+		}
+
+		System.out.println("packed widths pass");
+	}
+
+	@Test
+	public void testRenumberRejectsNonPermutations() {
+		DFATable table = random(5, 33);
+		int[][] bad = { { 0, 1, 2, 3 }, { 0, 1, 2, 3, 4, 5 }, { 0, 1, 2, 3, 3 }, { 0, 1, 2, 3, 5 }, { 0, 1, 2, -1, 4 } };
+		for (int[] order : bad) {
+			try {
+				table.renumber(order);
+				fail("accepted " + Arrays.toString(order));
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		DFATable reversed = table.renumber(new int[] { 4, 3, 2, 1, 0 });
+		assertEquals(table.getStateName(0), reversed.getStateName(4));
+		assertEquals(4 - table.getStartState(), reversed.getStartState());
+
+		System.out.println("renumber rejection pass");
+	}
+
+	@Test
+	public void testLayoutsPreserveLanguage() {
+		for (AutomatonGenerator.Shape shape : AutomatonGenerator.Shape.values()) {
+			DFATable table = DFATable.compile(new AutomatonGenerator(33).generate(shape, 400, ALPHABET));
+			List<String> inputs = new WorkloadGenerator(table, ALPHABET, 33).generate(2000, 64);
+
+			int[] bfs = StateLayout.bfsOrder(table);
+			assertEquals(table.getStartState(), bfs[0]);
+			DFATable byBfs = table.renumber(bfs);
+			assertEquals(0, byBfs.getStartState());
+			assertSameLanguage(shape + " bfs", table, inputs, byBfs);
+			PackedDFATable packed = PackedDFATable.pack(byBfs);
+			for (String s : inputs) assertEquals(shape + " bfs packed on " + s, table.accepts(s), packed.accepts(s));
+
+			long[] visits = StateLayout.profile(table, inputs.subList(0, 200));
+			int[] hot = StateLayout.hotnessOrder(table, visits);
+			int[] rank = new int[bfs.length];
+			for (int i = 0; i < bfs.length; i++) rank[bfs[i]] = i;
+			for (int i = 1; i < hot.length; i++) {
+				long a = visits[hot[i - 1]];
+				long b = visits[hot[i]];
+				assertTrue(shape + " hotness order at " + i, a > b || a == b && rank[hot[i - 1]] < rank[hot[i]]);
+			}
+			assertSameLanguage(shape + " hotness", table, inputs, table.renumber(hot));
+		}
+
+		System.out.println("layout language pass");
+	}
+
+}
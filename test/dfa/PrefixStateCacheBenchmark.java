@@ -0,0 +1,75 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import fa.dfa.DFATable;
+import fa.dfa.PrefixStateCache;
+import fa.dfa.RegexCompiler;
+
+/**
+ * Compares plain table runs with the prefix-state cache on a routing
+ * workload, where most paths share a few long prefixes, and on random
+ * paths that share nothing.
+ *
+ * Usage: java test.dfa.PrefixStateCacheBenchmark [inputs] [prefixLength] [blockSize]
+ */
+public class PrefixStateCacheBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int prefixLength = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : PrefixStateCache.DEFAULT_BLOCK_SIZE;
+		DFATable table = RegexCompiler.compileTable("/api/v[0-9]/(tenants|users|orders)(/[a-z0-9]+)*");
+
+		Random rnd = new Random(37);
+		String[] prefixes = new String[32];
+		for (int i = 0; i < prefixes.length; i++) {
+			StringBuilder sb = new StringBuilder("/api/v2/tenants");
+			while (sb.length() < prefixLength) sb.append('/').append(word(rnd, 12));
+			prefixes[i] = sb.toString();
+		}
+		List<String> skewed = new ArrayList<>();
+		List<String> random = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			// Zipf-like: prefix j is picked with weight 1/(j+1)
+			int j = (int) Math.min(prefixes.length - 1, Math.floor(Math.exp(rnd.nextDouble() * Math.log(prefixes.length + 1)) - 1));
+			skewed.add(prefixes[j] + "/" + word(rnd, 8));
+			StringBuilder sb = new StringBuilder("/api/v2/tenants");
+			while (sb.length() < prefixLength) sb.append('/').append(word(rnd, 12));
+			random.add(sb.toString());
+		}
+
+		for (int round = 0; round < 5; round++) {
+			System.out.printf("round %d%n", round);
+			run("skewed  table", skewed, table::accepts, null);
+			PrefixStateCache cache = new PrefixStateCache(table, blockSize, PrefixStateCache.DEFAULT_CAPACITY);
+			run("skewed  prefix cache", skewed, cache::accepts, cache);
+			run("random  table", random, table::accepts, null);
+			cache = new PrefixStateCache(table, blockSize, PrefixStateCache.DEFAULT_CAPACITY);
+			run("random  prefix cache", random, cache::accepts, cache);
+		}
+	}
+
+	private static String word(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) sb.append("abcdefghijklmnopqrstuvwxyz0123456789".charAt(rnd.nextInt(36)));
+		return sb.toString();
+	}
+
+	private static void run(String name, List<String> inputs, Predicate<String> engine, PrefixStateCache cache) {
+		long t0 = System.nanoTime();
+		long chars = 0;
+		int accepted = 0;
+		for (String s : inputs) {
+			if (engine.test(s)) accepted++;
+			chars += s.length();
+		}
+		long nanos = System.nanoTime() - t0;
+		double perCall = cache == null ? (double) chars / inputs.size() : (double) cache.getCharsProcessed() / inputs.size();
+		System.out.printf("  %-22s %8.1f Mchar/s  %6.1f chars stepped/call  accepted %d%n", name,
+				chars / (nanos / 1e9) / 1e6, perCall, accepted);
+	}
+}
@@ -0,0 +1,112 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.DFATable;
+import fa.dfa.PrefixStateCache;
+import fa.dfa.RegexCompiler;
+
+public class PrefixStateCacheTest {
+
+	private static final String ROUTES = "/api/v[0-9]/(tenants|users|orders)(/[a-z0-9]+)*";
+
+	private String randomWord(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) sb.append("abcdefghij0123456789".charAt(rnd.nextInt(20)));
+		return sb.toString();
+	}
+
+	private List<String> skewedInputs(Random rnd, int count) {
+		String[] prefixes = new String[8];
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = "/api/v" + (i % 3) + "/" + (i % 2 == 0 ? "tenants" : "users") + "/" + randomWord(rnd, 40)
+					+ "/" + randomWord(rnd, 30);
+		}
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			// most traffic shares a few long prefixes; some requests are malformed
+			String s = prefixes[rnd.nextInt(10) < 8 ? rnd.nextInt(2) : rnd.nextInt(prefixes.length)] + "/"
+					+ randomWord(rnd, 1 + rnd.nextInt(8));
+			if (rnd.nextInt(20) == 0) s += "/X";
+			inputs.add(s);
+		}
+		return inputs;
+	}
+
+	@Test
+	public void testMatchesTableOnSkewedInputs() {
+		Random rnd = new Random(37);
+		DFATable table = RegexCompiler.compileTable(ROUTES);
+		PrefixStateCache cache = new PrefixStateCache(table);
+		long total = 0;
+		for (String s : skewedInputs(rnd, 5000)) {
+			assertEquals(s, table.accepts(s), cache.accepts(s));
+			total += s.length();
+		}
+		assertEquals(5000, cache.getCalls());
+		assertTrue(cache.size() > 0);
+		assertTrue("processed " + cache.getCharsProcessed() + " of " + total, cache.getCharsProcessed() * 3 < total);
+
+		System.out.println("prefix cache skewed pass: processed " + cache.getCharsProcessed() + " of " + total);
+	}
+
+	@Test
+	public void testRandomInputsDoNotFillCache() {
+		Random rnd = new Random(37);
+		DFATable table = RegexCompiler.compileTable(ROUTES);
+		PrefixStateCache cache = new PrefixStateCache(table, 8, 64);
+		for (int i = 0; i < 2000; i++) {
+			String s = "/" + randomWord(rnd, 60);
+			assertEquals(s, table.accepts(s), cache.accepts(s));
+		}
+		assertTrue(cache.size() < 8);
+		assertEquals(0, cache.getCharsSkipped());
+
+		System.out.println("prefix cache random pass");
+	}
+
+	@Test
+	public void testCapacityBound() {
+		Random rnd = new Random(37);
+		DFATable table = RegexCompiler.compileTable(ROUTES);
+		PrefixStateCache cache = new PrefixStateCache(table, 4, 16);
+		List<String> inputs = skewedInputs(rnd, 3000);
+		for (String s : inputs) {
+			assertEquals(s, table.accepts(s), cache.accepts(s));
+			assertTrue(cache.size() <= 16);
+		}
+		assertTrue(cache.getEvictions() > 0);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getCalls());
+
+		System.out.println("prefix cache capacity pass");
+	}
+
+	@Test
+	public void testLargeCapacities() {
+		Random rnd = new Random(37);
+		DFATable table = RegexCompiler.compileTable(ROUTES);
+		List<String> inputs = skewedInputs(rnd, 500);
+		for (int capacity : new int[] { 1, (1 << 20) + 1, 1 << 29, Integer.MAX_VALUE }) {
+			PrefixStateCache cache = new PrefixStateCache(table, 4, capacity);
+			for (String s : inputs) assertEquals(capacity + " on " + s, table.accepts(s), cache.accepts(s));
+			assertTrue(cache.size() <= capacity);
+		}
+		try {
+			new PrefixStateCache(table, 4, 0);
+			fail("zero capacity accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("prefix cache large capacity pass");
+	}
+
+}
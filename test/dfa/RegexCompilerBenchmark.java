@@ -0,0 +1,119 @@
+package test.dfa;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+/**
+ * Compares RegexCompiler against java.util.regex on thousands of generated
+ * patterns: compile time, retained heap after compilation, and the time
+ * for full-match membership checks on the same inputs.
+ *
+ * Usage: java test.dfa.RegexCompilerBenchmark [patterns] [inputsPerPattern]
+ */
+public class RegexCompilerBenchmark {
+
+	private static final String[] WORDS = { "get", "put", "api", "v2", "user", "id", "log", "tmp", "x" };
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int inputsPerPattern = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		Random rnd = new Random(30);
+		String[] patterns = new String[count];
+		for (int i = 0; i < count; i++) patterns[i] = randomPattern(rnd);
+		String[] inputs = new String[inputsPerPattern];
+		for (int i = 0; i < inputsPerPattern; i++) inputs[i] = randomInput(rnd);
+
+		for (int round = 0; round < 3; round++) {
+			long heap = usedHeap();
+			long t0 = System.nanoTime();
+			Pattern[] jdk = new Pattern[count];
+			for (int i = 0; i < count; i++) jdk[i] = Pattern.compile(patterns[i]);
+			long jdkCompile = System.nanoTime() - t0;
+			long jdkHeap = usedHeap() - heap;
+
+			heap = usedHeap();
+			t0 = System.nanoTime();
+			DFA[] dfas = new DFA[count];
+			for (int i = 0; i < count; i++) dfas[i] = RegexCompiler.compile(patterns[i]);
+			long dfaCompile = System.nanoTime() - t0;
+			long dfaHeap = usedHeap() - heap;
+
+			heap = usedHeap();
+			t0 = System.nanoTime();
+			DFATable[] tables = new DFATable[count];
+			for (int i = 0; i < count; i++) tables[i] = RegexCompiler.compileTable(patterns[i]);
+			long tableCompile = System.nanoTime() - t0;
+			long tableHeap = usedHeap() - heap;
+
+			t0 = System.nanoTime();
+			int jdkHits = 0;
+			for (Pattern p : jdk) for (String s : inputs) if (p.matcher(s).matches()) jdkHits++;
+			long jdkMatch = System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			int dfaHits = 0;
+			for (DFA d : dfas) for (String s : inputs) if (d.accepts(s)) dfaHits++;
+			long dfaMatch = System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			int tableHits = 0;
+			for (DFATable t : tables) for (String s : inputs) if (t.accepts(s)) tableHits++;
+			long tableMatch = System.nanoTime() - t0;
+			boolean agree = jdkHits == dfaHits && dfaHits == tableHits;
+
+			System.out.printf("round %d: %d patterns, %d checks, results agree: %b%n", round, count,
+					(long) count * inputsPerPattern, agree);
+			System.out.printf("  java.util.regex  compile %7.1f ms  heap %7d KB  match %7.1f ms%n",
+					jdkCompile / 1e6, jdkHeap / 1024, jdkMatch / 1e6);
+			System.out.printf("  RegexCompiler    compile %7.1f ms  heap %7d KB  match %7.1f ms  (DFA)%n",
+					dfaCompile / 1e6, dfaHeap / 1024, dfaMatch / 1e6);
+			System.out.printf("  RegexCompiler    compile %7.1f ms  heap %7d KB  match %7.1f ms  (DFATable)%n",
+					tableCompile / 1e6, tableHeap / 1024, tableMatch / 1e6);
+		}
+	}
+
+	private static String randomPattern(Random rnd) {
+		StringBuilder sb = new StringBuilder("/");
+		int parts = 2 + rnd.nextInt(4);
+		for (int i = 0; i < parts; i++) {
+			switch (rnd.nextInt(4)) {
+			case 0:
+				sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+				break;
+			case 1:
+				sb.append('(').append(WORDS[rnd.nextInt(WORDS.length)]).append('|')
+						.append(WORDS[rnd.nextInt(WORDS.length)]).append(')');
+				break;
+			case 2:
+				sb.append("[0-9]+");
+				break;
+			default:
+				sb.append("[a-z]*");
+			}
+			sb.append('/');
+		}
+		return sb.toString();
+	}
+
+	private static String randomInput(Random rnd) {
+		StringBuilder sb = new StringBuilder("/");
+		int parts = 2 + rnd.nextInt(4);
+		for (int i = 0; i < parts; i++) {
+			if (rnd.nextBoolean()) sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+			else sb.append(rnd.nextInt(1000));
+			sb.append('/');
+		}
+		return sb.toString();
+	}
+
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,111 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.RegexCompiler;
+
+public class RegexCompilerTest {
+
+	private static final String[] PATTERNS = {
+			"",
+			"a",
+			"ab|c",
+			"(a|b)*abb",
+			"a+b?c*",
+			"(ab)+|ba*",
+			"[a-c]x[0-9]+",
+			"\\d+(\\.\\d*)?",
+			"(a|)(b|)",
+			"((a*)*b)*",
+			"[-a]\\-[b-]",
+			"[]a]+",
+			"\\w+@\\w+\\.(com|org)",
+	};
+
+	private static final String INPUT_ALPHABET = "abcx019.-@]_mo ";
+
+	@Test
+	public void testSimple() {
+		DFA dfa = RegexCompiler.compile("(a|b)*abb");
+		assertTrue(dfa.isStart("q0"));
+		assertTrue(dfa.accepts("abb"));
+		assertTrue(dfa.accepts("babaabb"));
+		assertFalse(dfa.accepts("ab"));
+		assertFalse(dfa.accepts("abbc"));
+		assertNotNull(dfa.getState("q3"));
+		assertNull(dfa.getState("q4"));
+
+		System.out.println("regex simple pass");
+	}
+
+	@Test
+	public void testAgainstJavaRegex() {
+		Random rnd = new Random(30);
+		for (String p : PATTERNS) {
+			DFA dfa = RegexCompiler.compile(p);
+			DFATable table = RegexCompiler.compileTable(p);
+			Pattern jdk = Pattern.compile(p);
+			for (int i = 0; i < 3000; i++) {
+				String s = randomInput(rnd, p);
+				boolean expected = jdk.matcher(s).matches();
+				assertEquals(p + " on " + s, expected, dfa.accepts(s));
+				assertEquals(p + " on " + s, expected, table.accepts(s));
+			}
+		}
+
+		System.out.println("regex equivalence pass");
+	}
+
+	private String randomInput(Random rnd, String pattern) {
+		int length = rnd.nextInt(8);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			// bias towards characters the pattern mentions
+			if (pattern.length() > 0 && rnd.nextBoolean()) {
+				sb.append(pattern.charAt(rnd.nextInt(pattern.length())));
+			} else {
+				sb.append(INPUT_ALPHABET.charAt(rnd.nextInt(INPUT_ALPHABET.length())));
+			}
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testMalformed() {
+		String[] bad = { "(a", "a)", "*a", "[a", "[^a]", "a.b", "\\q", "[z-a]", "a{2}" };
+		for (String p : bad) {
+			try {
+				RegexCompiler.compile(p);
+				fail("expected rejection of " + p);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		System.out.println("regex malformed pass");
+	}
+
+	@Test
+	public void testTableTooLarge() {
+		// (a|b)*a(a|b)^15 needs 2^16 states, and the wide class adds 65535 symbols
+		StringBuilder p = new StringBuilder("(a|b)*a");
+		for (int i = 0; i < 15; i++) p.append("(a|b)");
+		p.append("|[\u0001-\uffff]");
+		try {
+			RegexCompiler.compileTable(p.toString());
+			fail("table of 2^16 states by 65535 symbols accepted");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getCause() instanceof ArithmeticException);
+		}
+
+		System.out.println("regex table size pass");
+	}
+
+}
@@ -0,0 +1,411 @@
+package test.dfa;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import fa.dfa.AcceleratedMatcher;
+import fa.dfa.AcceptanceProcessor;
+import fa.dfa.ApproximateMatcher;
+import fa.dfa.ConcurrentDFABuilder;
+import fa.dfa.DFA;
+import fa.dfa.DFAInterner;
+import fa.dfa.DFARegistry;
+import fa.dfa.DFATable;
+import fa.dfa.IncrementalMatcher;
+import fa.dfa.PackedDFATable;
+import fa.dfa.PrefixStateCache;
+import fa.dfa.RegexCompiler;
+import fa.dfa.StateLayout;
+import fa.dfa.Utf8DFA;
+import fa.dfa.VersionedDFATable;
+
+/**
+ * Long-running differential soak test. Each round generates an automaton of
+ * a random shape and size and a matching workload, runs the workload
+ * through every execution engine, and checks each answer against
+ * {@link DFA#accepts(String)}. The workload is also streamed through an
+ * {@link AcceptanceProcessor}, and a random regex over the round's alphabet
+ * is compiled both ways and checked against java.util.regex. Every round
+ * reports build times, per-engine throughput, the heap high-water mark and
+ * GC time; the run exits with status 1 if any engine ever disagrees.
+ *
+ * Usage: java -Xmx8g test.dfa.SoakHarness [seconds] [maxStates] [maxTransitions] [seed]
+ */
+public class SoakHarness {
+
+	private static final class Engine {
+		final String name;
+		final Predicate<String> run;
+		long nanos;
+		long mismatches;
+
+		Engine(String name, Predicate<String> run) {
+			this.name = name;
+			this.run = run;
+		}
+	}
+
+	public static void main(String[] args) {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 300;
+		int maxStates = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		long maxTransitions = args.length > 2 ? Long.parseLong(args[2]) : 16_000_000L;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 40;
+
+		Random rnd = new Random(seed);
+		DFARegistry registry = new DFARegistry(64L << 20);
+		DFAInterner interner = new DFAInterner();
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		long mismatches = 0;
+		long maxHeap = 0;
+		long gcStart = gcMillis();
+		int round = 0;
+		while (System.nanoTime() < deadline) {
+			AutomatonGenerator.Shape shape = AutomatonGenerator.Shape.values()[round % AutomatonGenerator.Shape.values().length];
+			int states = (int) Math.round(Math.exp(Math.log(100) + rnd.nextDouble() * (Math.log(maxStates) - Math.log(100))));
+			int k;
+			switch (shape) {
+			case SPARSE:
+				k = 64 + rnd.nextInt(200);
+				break;
+			case CLIQUE:
+				k = 2 + rnd.nextInt(15);
+				break;
+			default:
+				k = 2 + rnd.nextInt(39);
+			}
+			if ((long) states * k > maxTransitions) states = (int) Math.max(100, maxTransitions / k);
+
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+			long gcBefore = gcMillis();
+			System.out.printf("round %d: %s, %d states, %d symbols%n", round, shape, states, k);
+			mismatches += runRound(shape, states, k, 20_000, 256, rnd.nextLong(), registry, interner, System.out);
+			long heap = heapPeak();
+			maxHeap = Math.max(maxHeap, heap);
+			System.out.printf("  heap peak %.1f MB, gc %d ms%n", heap / 1048576.0, gcMillis() - gcBefore);
+			round++;
+		}
+		System.out.printf("%d rounds, %d mismatches, max heap peak %.1f MB, gc %d ms total, registry %s, intern requests %d%n",
+				round, mismatches, maxHeap / 1048576.0, gcMillis() - gcStart, registry.getStats(), interner.getRequests());
+		if (mismatches > 0) System.exit(1);
+	}
+
+	/**
+	 * Runs one round and prints its report. The round's automaton is removed
+	 * from the registry and the interner is cleared before returning, so
+	 * nothing a round shares with them outlives it.
+	 *
+	 * @return The number of wrong answers over all engines.
+	 */
+	static long runRound(AutomatonGenerator.Shape shape, int states, int symbols, int inputCount, int maxLength,
+			long seed, DFARegistry registry, DFAInterner interner, PrintStream out) {
+		String alphabet = AutomatonGenerator.alphabet(symbols);
+		long t0 = System.nanoTime();
+		DFA dfa = new AutomatonGenerator(seed).generate(shape, states, alphabet);
+		long tGenerate = System.nanoTime() - t0;
+		t0 = System.nanoTime();
+		DFATable table = DFATable.compile(dfa);
+		long tCompile = System.nanoTime() - t0;
+		List<String> inputs = new WorkloadGenerator(table, alphabet, seed).generate(inputCount, maxLength);
+		long chars = 0;
+		for (String s : inputs) chars += s.length();
+
+		boolean[] expected = new boolean[inputs.size()];
+		t0 = System.nanoTime();
+		int accepted = 0;
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = dfa.accepts(inputs.get(i));
+			if (expected[i]) accepted++;
+		}
+		long tReference = System.nanoTime() - t0;
+
+		List<Engine> engines = new ArrayList<>();
+		List<String> builds = new ArrayList<>();
+		engines.add(new Engine("DFATable", table::accepts));
+		t0 = System.nanoTime();
+		PackedDFATable packed = PackedDFATable.pack(table);
+		builds.add(String.format("packed %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("PackedDFATable", packed::accepts));
+		t0 = System.nanoTime();
+		DFATable bfs = table.renumber(StateLayout.bfsOrder(table));
+		long[] visits = StateLayout.profile(table, inputs.subList(0, Math.max(1, inputs.size() / 10)));
+		PackedDFATable hot = PackedDFATable.pack(table.renumber(StateLayout.hotnessOrder(table, visits)));
+		builds.add(String.format("relayout %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("bfs relayout", bfs::accepts));
+		engines.add(new Engine("hotness packed", hot::accepts));
+		t0 = System.nanoTime();
+		AcceleratedMatcher accelerated = new AcceleratedMatcher(table);
+		builds.add(String.format("accelerated %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("AcceleratedMatcher", accelerated::accepts));
+		t0 = System.nanoTime();
+		Utf8DFA utf8 = Utf8DFA.compile(table);
+		builds.add(String.format("utf8 %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("Utf8DFA", s -> utf8.accepts(s.getBytes(StandardCharsets.UTF_8))));
+		VersionedDFATable versioned = VersionedDFATable.of(table).edit().commit();
+		engines.add(new Engine("VersionedDFATable", versioned::accepts));
+		t0 = System.nanoTime();
+		DFA loaded = loadConcurrently(table, 4);
+		builds.add(String.format("concurrent load %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("ConcurrentDFABuilder", loaded::accepts));
+		IncrementalMatcher incremental = new IncrementalMatcher(dfa, 64);
+		engines.add(new Engine("IncrementalMatcher", s -> {
+			incremental.reset(s);
+			return incremental.accepts();
+		}));
+		PrefixStateCache prefixCache = new PrefixStateCache(table);
+		engines.add(new Engine("PrefixStateCache", prefixCache::accepts));
+		ApproximateMatcher approximate = new ApproximateMatcher(table);
+		engines.add(new Engine("ApproximateMatcher k=0", s -> approximate.acceptsWithin(s, 0) == 0));
+		String id = shape + "/" + seed;
+		t0 = System.nanoTime();
+		registry.register(id, dfa);
+		builds.add(String.format("register %.0f ms", (System.nanoTime() - t0) / 1e6));
+		engines.add(new Engine("DFARegistry", s -> registry.accepts(id, s)));
+		t0 = System.nanoTime();
+		DFATable canonical = interner.intern(table);
+		builds.add(String.format("canonical %.0f ms (%d states)", (System.nanoTime() - t0) / 1e6, canonical.getStateCount()));
+		engines.add(new Engine("canonical", canonical::accepts));
+		if (symbols >= 2) {
+			char a = alphabet.charAt(0);
+			char b = alphabet.charAt(1);
+			t0 = System.nanoTime();
+			DFA swapped = dfa.swap(a, b);
+			builds.add(String.format("swap %.0f ms", (System.nanoTime() - t0) / 1e6));
+			engines.add(new Engine("DFA.swap", s -> swapped.accepts(s.replace(a, '\0').replace(b, a).replace('\0', b))));
+		}
+
+		out.printf("  generate %.0f ms, compile %.0f ms, %s%n", tGenerate / 1e6, tCompile / 1e6, String.join(", ", builds));
+		out.printf("  %d inputs, %d chars, %d accepted%n", inputs.size(), chars, accepted);
+		out.printf("  %-24s %8.1f Mchar/s%n", "DFA (reference)", chars / (tReference / 1e9) / 1e6);
+		long mismatches = 0;
+		for (Engine engine : engines) {
+			t0 = System.nanoTime();
+			for (int i = 0; i < expected.length; i++) {
+				String s = inputs.get(i);
+				if (engine.run.test(s) != expected[i]) {
+					if (engine.mismatches++ < 3) {
+						out.printf("  MISMATCH %s on \"%s\": expected %b%n", engine.name, abbreviate(s), expected[i]);
+					}
+				}
+			}
+			engine.nanos = System.nanoTime() - t0;
+			mismatches += engine.mismatches;
+			out.printf("  %-24s %8.1f Mchar/s%s%n", engine.name, chars / (engine.nanos / 1e9) / 1e6,
+					engine.mismatches == 0 ? "" : "  " + engine.mismatches + " MISMATCHES");
+		}
+
+		// Edits on the incremental matcher must agree with a fresh run on the edited document
+		Random rnd = new Random(seed);
+		long editMismatches = 0;
+		for (int i = 0; i < Math.min(500, inputs.size()); i++) {
+			incremental.reset(inputs.get(i));
+			for (int e = 0; e < 4; e++) {
+				String doc = incremental.getDocument();
+				if (doc.isEmpty() || rnd.nextBoolean()) {
+					incremental.insert(rnd.nextInt(doc.length() + 1), String.valueOf(alphabet.charAt(rnd.nextInt(symbols))));
+				} else {
+					int pos = rnd.nextInt(doc.length());
+					incremental.delete(pos, Math.min(doc.length() - pos, 1 + rnd.nextInt(3)));
+				}
+				if (incremental.accepts() != dfa.accepts(incremental.getDocument())) {
+					if (editMismatches++ < 3) {
+						out.printf("  MISMATCH IncrementalMatcher edit on \"%s\"%n", abbreviate(incremental.getDocument()));
+					}
+				}
+			}
+		}
+		if (editMismatches > 0) out.printf("  IncrementalMatcher edits: %d MISMATCHES%n", editMismatches);
+
+		mismatches += editMismatches + checkProcessor(dfa, inputs, expected, chars, out) + checkRegex(alphabet, seed, out);
+		registry.remove(id);
+		interner.clear();
+		return mismatches;
+	}
+
+	/**
+	 * Rebuilds a compiled DFA through a ConcurrentDFABuilder, with the rows split between loader threads.
+	 */
+	private static DFA loadConcurrently(DFATable table, int threads) {
+		int n = table.getStateCount();
+		int k = table.getSymbolCount();
+		ConcurrentDFABuilder builder = new ConcurrentDFABuilder();
+		for (int a = 0; a < k; a++) builder.addSigma(table.getSymbol(a));
+		Thread[] loaders = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int first = t;
+			loaders[t] = new Thread(() -> {
+				for (int q = first; q < n; q += threads) builder.addState(table.getStateName(q));
+			});
+			loaders[t].start();
+		}
+		join(loaders);
+		for (int t = 0; t < threads; t++) {
+			int first = t;
+			loaders[t] = new Thread(() -> {
+				for (int q = first; q < n; q += threads) {
+					if (table.isFinal(q)) builder.setFinal(table.getStateName(q));
+					for (int a = 0; a < k; a++) {
+						int to = table.next(q, a);
+						if (to != DFATable.NONE) builder.addTransition(table.getStateName(q), table.getStateName(to), table.getSymbol(a));
+					}
+				}
+			});
+			loaders[t].start();
+		}
+		join(loaders);
+		if (table.getStartState() != DFATable.NONE) builder.setStart(table.getStateName(table.getStartState()));
+		return builder.build();
+	}
+
+	private static void join(Thread[] threads) {
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Streams the workload through an ordered AcceptanceProcessor and checks every result and its position.
+	 *
+	 * @return The number of wrong, missing or misplaced results.
+	 */
+	private static long checkProcessor(DFA dfa, List<String> inputs, boolean[] expected, long chars, PrintStream out) {
+		AtomicLong wrong = new AtomicLong();
+		AtomicLong received = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(1);
+		AcceptanceProcessor processor = new AcceptanceProcessor(dfa, ForkJoinPool.commonPool(), 64, 1,
+				TimeUnit.MILLISECONDS, 1024, true);
+		processor.subscribe(new Flow.Subscriber<AcceptanceProcessor.Result>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(AcceptanceProcessor.Result r) {
+				long i = received.getAndIncrement();
+				if (i >= expected.length) {
+					wrong.incrementAndGet();
+				} else if (r.getSequence() != i || r.isAccepted() != expected[(int) i]) {
+					if (wrong.getAndIncrement() < 3) {
+						out.printf("  MISMATCH AcceptanceProcessor at %d: got %s, expected %b%n", i, r, expected[(int) i]);
+					}
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				out.printf("  AcceptanceProcessor failed: %s%n", t);
+				wrong.incrementAndGet();
+				done.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+				done.countDown();
+			}
+		});
+		long t0 = System.nanoTime();
+		try (SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), 1024)) {
+			publisher.subscribe(processor);
+			for (String s : inputs) publisher.submit(s);
+		}
+		try {
+			if (!done.await(5, TimeUnit.MINUTES)) out.println("  AcceptanceProcessor timed out");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long missing = Math.max(0, inputs.size() - received.get());
+		out.printf("  %-24s %8.1f Mchar/s%s%n", "AcceptanceProcessor", chars / ((System.nanoTime() - t0) / 1e9) / 1e6,
+				wrong.get() + missing == 0 ? "" : "  " + (wrong.get() + missing) + " MISMATCHES");
+		return wrong.get() + missing;
+	}
+
+	/**
+	 * Compiles a random regex over the alphabet to a DFA and to a table and
+	 * checks both against java.util.regex on short inputs, where backtracking stays cheap.
+	 *
+	 * @return The number of wrong answers.
+	 */
+	private static long checkRegex(String alphabet, long seed, PrintStream out) {
+		Random rnd = new Random(seed);
+		String regex = randomRegex(rnd, alphabet, 4);
+		long t0 = System.nanoTime();
+		DFA compiled = RegexCompiler.compile(regex);
+		DFATable table = RegexCompiler.compileTable(regex);
+		long tCompile = System.nanoTime() - t0;
+		Pattern reference = Pattern.compile(regex);
+		List<String> inputs = new WorkloadGenerator(table, alphabet, seed).generate(2000, 12);
+		long mismatches = 0;
+		for (String s : inputs) {
+			boolean expected = reference.matcher(s).matches();
+			if (compiled.accepts(s) != expected || table.accepts(s) != expected) {
+				if (mismatches++ < 3) out.printf("  MISMATCH RegexCompiler /%s/ on \"%s\": expected %b%n", regex, s, expected);
+			}
+		}
+		out.printf("  regex of %d chars, %d states, compiled twice in %.1f ms%s%n", regex.length(), table.getStateCount(),
+				tCompile / 1e6, mismatches == 0 ? "" : "  " + mismatches + " MISMATCHES");
+		return mismatches;
+	}
+
+	private static String randomRegex(Random rnd, String alphabet, int depth) {
+		int kind = depth == 0 ? rnd.nextInt(2) : rnd.nextInt(6);
+		switch (kind) {
+		case 0:
+			return String.valueOf(alphabet.charAt(rnd.nextInt(alphabet.length())));
+		case 1:
+			StringBuilder cls = new StringBuilder("[");
+			for (int i = 1 + rnd.nextInt(3); i > 0; i--) cls.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+			return cls.append(']').toString();
+		case 2:
+		case 3:
+			return randomRegex(rnd, alphabet, depth - 1) + randomRegex(rnd, alphabet, depth - 1);
+		case 4:
+			return "(" + randomRegex(rnd, alphabet, depth - 1) + "|" + randomRegex(rnd, alphabet, depth - 1) + ")";
+		default:
+			return "(" + randomRegex(rnd, alphabet, depth - 1) + ")" + "*+?".charAt(rnd.nextInt(3));
+		}
+	}
+
+	private static String abbreviate(String s) {
+		return s.length() <= 60 ? s : s.substring(0, 60) + "...(" + s.length() + " chars)";
+	}
+
+	/**
+	 * Returns the sum of the peak usage of the heap pools since their last reset.
+	 * Pools peak at different times, so this is an upper bound on the true high-water mark.
+	 */
+	private static long heapPeak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, gc.getCollectionTime());
+		}
+		return total;
+	}
+}
@@ -0,0 +1,57 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.DFAInterner;
+import fa.dfa.DFARegistry;
+import fa.dfa.DFATable;
+
+public class SoakHarnessTest {
+
+	@Test
+	public void testGeneratorsAreSeeded() {
+		String alphabet = AutomatonGenerator.alphabet(5);
+		for (AutomatonGenerator.Shape shape : AutomatonGenerator.Shape.values()) {
+			DFA a = new AutomatonGenerator(40).generate(shape, 300, alphabet);
+			DFA b = new AutomatonGenerator(40).generate(shape, 300, alphabet);
+			assertEquals(shape.toString(), a.toString(), b.toString());
+			DFATable table = DFATable.compile(a);
+			List<String> w1 = new WorkloadGenerator(table, alphabet, 7).generate(200, 40);
+			List<String> w2 = new WorkloadGenerator(table, alphabet, 7).generate(200, 40);
+			assertEquals(w1, w2);
+			assertTrue(shape + " workload has no accepted input", w1.stream().anyMatch(a::accepts));
+		}
+		assertEquals(120, AutomatonGenerator.alphabet(120).chars().distinct().count());
+
+		System.out.println("generator seed pass");
+	}
+
+	@Test
+	public void testEveryEngineAgreesOnEveryShape() {
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(report);
+		DFARegistry registry = new DFARegistry(1 << 20);
+		DFAInterner interner = new DFAInterner();
+		long seed = 40;
+		for (AutomatonGenerator.Shape shape : AutomatonGenerator.Shape.values()) {
+			for (int symbols : new int[] { 2, 7, 90 }) {
+				long mismatches = SoakHarness.runRound(shape, 500, symbols, 400, 48, seed++, registry, interner, out);
+				assertEquals(shape + " with " + symbols + " symbols:\n" + report, 0, mismatches);
+				// Nothing a round registers or interns is kept once it ends
+				assertEquals(0, registry.getStats().getRegistered());
+				assertEquals(0, registry.getStats().getCached());
+				assertEquals(0, interner.size());
+			}
+		}
+
+		System.out.println("soak round pass");
+	}
+
+}
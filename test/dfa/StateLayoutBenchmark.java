@@ -0,0 +1,100 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.PackedDFATable;
+import fa.dfa.StateLayout;
+
+/**
+ * Measures state renumbering on a large automaton with a skewed workload.
+ * Most symbols lead into a small set of hot states scattered over the
+ * whole id range; one rare symbol jumps to a uniformly random state. The
+ * benchmark compares the original numbering with BFS and profile-guided
+ * hotness layouts, all packed to the narrowest entry width.
+ *
+ * Usage: java -Xmx3g test.dfa.StateLayoutBenchmark [states] [hotStates] [inputs] [inputLength]
+ */
+public class StateLayoutBenchmark {
+
+	public static void main(String[] args) {
+		int states = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+		int hot = args.length > 1 ? Integer.parseInt(args[1]) : 4_000;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+		int length = args.length > 3 ? Integer.parseInt(args[3]) : 2_000;
+		String alphabet = "abcdefgh";
+
+		Random rnd = new Random(33);
+		DFA dfa = new DFA();
+		for (char c : alphabet.toCharArray()) dfa.addSigma(c);
+		for (int i = 0; i < states; i++) dfa.addState("s" + i);
+		dfa.setStart("s" + rnd.nextInt(states));
+		int[] hotIds = new int[hot];
+		for (int i = 0; i < hot; i++) hotIds[i] = rnd.nextInt(states);
+		for (int i = 0; i < states; i++) {
+			if (rnd.nextInt(3) == 0) dfa.setFinal("s" + i);
+			for (int a = 0; a < alphabet.length() - 1; a++) {
+				dfa.addTransition("s" + i, "s" + hotIds[rnd.nextInt(hot)], alphabet.charAt(a));
+			}
+			dfa.addTransition("s" + i, "s" + rnd.nextInt(states), alphabet.charAt(alphabet.length() - 1));
+		}
+		DFATable original = DFATable.compile(dfa);
+		dfa = null;
+
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			char[] c = new char[length];
+			for (int j = 0; j < length; j++) {
+				c[j] = rnd.nextInt(100) == 0 ? alphabet.charAt(alphabet.length() - 1)
+						: alphabet.charAt(rnd.nextInt(alphabet.length() - 1));
+			}
+			inputs.add(new String(c));
+		}
+		List<String> sample = inputs.subList(0, Math.max(1, count / 10));
+
+		long t0 = System.nanoTime();
+		DFATable bfs = original.renumber(StateLayout.bfsOrder(original));
+		long tBfs = System.nanoTime() - t0;
+		t0 = System.nanoTime();
+		long[] visits = StateLayout.profile(original, sample);
+		DFATable hotness = original.renumber(StateLayout.hotnessOrder(original, visits));
+		long tHot = System.nanoTime() - t0;
+		PackedDFATable packedOriginal = PackedDFATable.pack(original);
+		PackedDFATable packedBfs = PackedDFATable.pack(bfs);
+		PackedDFATable packedHot = PackedDFATable.pack(hotness);
+
+		long[] sorted = visits.clone();
+		Arrays.sort(sorted);
+		long total = Arrays.stream(visits).sum();
+		long top = 0;
+		for (int i = 0; i < hot && i < sorted.length; i++) top += sorted[sorted.length - 1 - i];
+		System.out.printf("profile: top %d states take %.1f%% of %d visits%n", hot, 100.0 * top / total, total);
+		System.out.println("footprint: " + StateLayout.report(original, packedHot));
+		System.out.printf("relayout time: bfs %.1f ms, profile+hotness %.1f ms%n", tBfs / 1e6, tHot / 1e6);
+
+		for (int round = 0; round < 5; round++) {
+			System.out.printf("round %d%n", round);
+			run("original (int table)", inputs, original::accepts);
+			run("original (packed)", inputs, packedOriginal::accepts);
+			run("bfs (packed)", inputs, packedBfs::accepts);
+			run("hotness (packed)", inputs, packedHot::accepts);
+		}
+	}
+
+	private static void run(String name, List<String> inputs, Predicate<String> engine) {
+		long t0 = System.nanoTime();
+		long chars = 0;
+		int accepted = 0;
+		for (String s : inputs) {
+			if (engine.test(s)) accepted++;
+			chars += s.length();
+		}
+		long nanos = System.nanoTime() - t0;
+		System.out.printf("  %-22s %8.1f Mchar/s  accepted %d%n", name, chars / (nanos / 1e9) / 1e6, accepted);
+	}
+}
@@ -0,0 +1,91 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.RegexCompiler;
+import fa.dfa.Utf8DFA;
+
+public class Utf8DFATest {
+
+	// symbols from every UTF-8 length class, including a surrogate pair
+	private static final String SYMBOLS = "ab\u00e9\u00f1\u0416\u20ac\u4e2d\ud83d\ude00\ud83d\ude01";
+
+	private DFA mixed() {
+		return RegexCompiler.compile("(a|\u00e9|\u20ac)*(b|\u0416\u4e2d|\ud83d\ude00)+[\u00f1\u4e2d]?(\ud83d\ude01)*");
+	}
+
+	private String randomString(Random rnd, int length) {
+		int[] codePoints = SYMBOLS.codePoints().toArray();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) sb.appendCodePoint(codePoints[rnd.nextInt(codePoints.length)]);
+		return sb.toString();
+	}
+
+	@Test
+	public void testMatchesCharEngine() {
+		DFA dfa = mixed();
+		Utf8DFA bytes = Utf8DFA.compile(dfa);
+		Random rnd = new Random(32);
+		int accepted = 0;
+		for (int i = 0; i < 20000; i++) {
+			String s = randomString(rnd, rnd.nextInt(6));
+			boolean expected = dfa.accepts(s);
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			assertEquals(s, expected, bytes.accepts(utf8));
+			assertEquals(s, expected, bytes.accepts(ByteBuffer.wrap(utf8)));
+			ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+			direct.put(utf8).flip();
+			assertEquals(s, expected, bytes.accepts(direct));
+			if (expected) accepted++;
+		}
+		assertTrue(accepted > 1000);
+
+		System.out.println("utf8 equivalence pass");
+	}
+
+	@Test
+	public void testSharedSuffixes() {
+		// every 3-byte character in the range shares its last continuation byte set
+		DFA dfa = RegexCompiler.compile("[\u4e00-\u4fff]+");
+		Utf8DFA bytes = Utf8DFA.compile(dfa);
+		assertTrue(bytes.accepts("\u4e00\u4fff\u4e80".getBytes(StandardCharsets.UTF_8)));
+		assertFalse(bytes.accepts("\u4e00\u5000".getBytes(StandardCharsets.UTF_8)));
+		assertTrue(bytes.getNodeCount() - bytes.getStateCount() <= 4);
+
+		System.out.println("utf8 shared suffix pass");
+	}
+
+	@Test
+	public void testRejectsInvalidUtf8() {
+		Utf8DFA bytes = Utf8DFA.compile(mixed());
+		byte[] euro = "\u20ac".getBytes(StandardCharsets.UTF_8);
+		byte[] b = { 'b' };
+		assertTrue(bytes.accepts(concat(euro, b)));
+		// truncated sequence
+		assertFalse(bytes.accepts(concat(new byte[] { euro[0], euro[1] }, b)));
+		// overlong encoding of 'b'
+		assertFalse(bytes.accepts(new byte[] { (byte) 0xC1, (byte) 0xA2 }));
+		// stray continuation byte
+		assertFalse(bytes.accepts(new byte[] { (byte) 0x80, 'b' }));
+		// offset and length
+		byte[] padded = { 'x', 'a', 'b', 'x' };
+		assertTrue(bytes.accepts(padded, 1, 2));
+
+		System.out.println("utf8 invalid input pass");
+	}
+
+	private byte[] concat(byte[] a, byte[] b) {
+		byte[] out = new byte[a.length + b.length];
+		System.arraycopy(a, 0, out, 0, a.length);
+		System.arraycopy(b, 0, out, a.length, b.length);
+		return out;
+	}
+
+}
@@ -0,0 +1,142 @@
+package test.dfa;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.dfa.VersionedDFATable;
+
+public class VersionedDFATableTest {
+
+	private static final String SIGMA = "abc";
+
+	private DFA randomDFA(Random rnd, int states) {
+		DFA dfa = new DFA();
+		for (char c : SIGMA.toCharArray()) dfa.addSigma(c);
+		for (int i = 0; i < states; i++) assertTrue(dfa.addState(Integer.toString(i)));
+		assertTrue(dfa.setStart("0"));
+		for (int i = 0; i < states; i++) {
+			if (rnd.nextInt(4) == 0) assertTrue(dfa.setFinal(Integer.toString(i)));
+			for (char c : SIGMA.toCharArray()) {
+				if (rnd.nextInt(8) != 0) {
+					assertTrue(dfa.addTransition(Integer.toString(i), Integer.toString(rnd.nextInt(states)), c));
+				}
+			}
+		}
+		return dfa;
+	}
+
+	private List<String> randomInputs(Random rnd, int count) {
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = rnd.nextInt(12);
+			for (int j = 0; j < length; j++) sb.append(SIGMA.charAt(rnd.nextInt(SIGMA.length())));
+			inputs.add(sb.toString());
+		}
+		return inputs;
+	}
+
+	@Test
+	public void testFirstVersionMatchesTable() {
+		Random rnd = new Random(34);
+		DFA dfa = randomDFA(rnd, 300);
+		VersionedDFATable v0 = VersionedDFATable.of(DFATable.compile(dfa));
+		assertEquals(0, v0.getVersion());
+		assertEquals(300, v0.getStateCount());
+		for (String s : randomInputs(rnd, 2000)) assertEquals(s, dfa.accepts(s), v0.accepts(s));
+		assertFalse(v0.accepts("x"));
+
+		System.out.println("versioned first version pass");
+	}
+
+	@Test
+	public void testPatchesAndOldVersions() {
+		Random rnd = new Random(34);
+		DFA dfa = randomDFA(rnd, 200);
+		DFATable table = DFATable.compile(dfa);
+		List<String> inputs = randomInputs(rnd, 1000);
+
+		List<VersionedDFATable> versions = new ArrayList<>();
+		List<boolean[]> expected = new ArrayList<>();
+		VersionedDFATable current = VersionedDFATable.of(table);
+		int states = 200;
+		for (int round = 0; round < 40; round++) {
+			versions.add(current);
+			boolean[] results = new boolean[inputs.size()];
+			for (int i = 0; i < results.length; i++) results[i] = dfa.accepts(inputs.get(i));
+			expected.add(results);
+
+			// mirror each edit on the DFA; state i of the table is named Integer.toString(i)
+			VersionedDFATable.Patch patch = current.edit();
+			if (round % 5 == 0) {
+				for (int j = 0; j < 70; j++) {
+					assertEquals(states, patch.addState());
+					assertTrue(dfa.addState(Integer.toString(states)));
+					states++;
+				}
+			}
+			for (int j = 0; j < 10; j++) {
+				int from = rnd.nextInt(states);
+				int to = rnd.nextInt(states);
+				char c = SIGMA.charAt(rnd.nextInt(SIGMA.length()));
+				assertTrue(patch.setTransition(from, c, to));
+				assertTrue(dfa.addTransition(Integer.toString(from), Integer.toString(to), c));
+			}
+			int flip = rnd.nextInt(states);
+			if (!dfa.isFinal(Integer.toString(flip))) {
+				assertTrue(patch.setFinal(flip, true));
+				assertTrue(dfa.setFinal(Integer.toString(flip)));
+			}
+			assertFalse(patch.setTransition(states, 'a', 0));
+			assertFalse(patch.setTransition(0, 'z', 0));
+			current = patch.commit();
+			assertEquals(round + 1, current.getVersion());
+		}
+
+		for (int v = 0; v < versions.size(); v++) {
+			boolean[] results = expected.get(v);
+			for (int i = 0; i < results.length; i++) {
+				assertEquals("version " + v + " on " + inputs.get(i), results[i], versions.get(v).accepts(inputs.get(i)));
+			}
+		}
+
+		System.out.println("versioned patch pass");
+	}
+
+	@Test
+	public void testUnfinalAndRemoveTransition() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "b", '0');
+		VersionedDFATable v0 = VersionedDFATable.of(DFATable.compile(dfa));
+		assertTrue(v0.accepts("0"));
+
+		VersionedDFATable v1 = v0.edit().commit();
+		VersionedDFATable.Patch patch = v1.edit();
+		assertTrue(patch.setFinal(1, false));
+		VersionedDFATable v2 = patch.commit();
+		assertTrue(patch.setFinal(1, true));
+		assertTrue(patch.setTransition(0, '0', -1));
+		VersionedDFATable v3 = patch.commit();
+
+		assertTrue(v1.accepts("0"));
+		assertFalse(v2.accepts("0"));
+		assertFalse(v3.accepts("0"));
+		assertTrue(v3.isFinal(1));
+		assertFalse(v2.isFinal(1));
+
+		System.out.println("versioned unfinal pass");
+	}
+
+}
@@ -0,0 +1,116 @@
+package test.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fa.dfa.DFATable;
+
+/**
+ * Builds seeded input workloads for an automaton. A workload mixes random
+ * strings over the alphabet, walks along the automaton's transitions that
+ * stop in a final state when they can, walks with one random edit, walks
+ * that share a few common prefixes, strings with a character outside the
+ * alphabet, and the empty string, so that both outcomes and every
+ * rejection path are covered.
+ */
+public class WorkloadGenerator {
+
+	/** A character that no generated alphabet contains. */
+	public static final char FOREIGN = '\u2603';
+
+	private final DFATable table;
+	private final String alphabet;
+	private final Random rnd;
+	private final List<String> prefixes = new ArrayList<>();
+
+	/**
+	 * Creates a generator.
+	 *
+	 * @param table The compiled automaton, used to walk transitions.
+	 * @param alphabet The automaton's symbols.
+	 * @param seed The seed for every choice the generator makes.
+	 */
+	public WorkloadGenerator(DFATable table, String alphabet, long seed) {
+		this.table = table;
+		this.alphabet = alphabet;
+		this.rnd = new Random(seed);
+	}
+
+	/**
+	 * Builds a workload.
+	 *
+	 * @param count The number of inputs.
+	 * @param maxLength The longest input, roughly.
+	 * @return The inputs.
+	 */
+	public List<String> generate(int count, int maxLength) {
+		List<String> inputs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) inputs.add(next(maxLength));
+		return inputs;
+	}
+
+	/**
+	 * Builds one input.
+	 *
+	 * @param maxLength The longest input, roughly.
+	 * @return The input.
+	 */
+	public String next(int maxLength) {
+		int kind = rnd.nextInt(20);
+		if (kind == 0) return "";
+		if (kind < 5) return randomString(1 + rnd.nextInt(maxLength));
+		if (kind < 12) return walk(new StringBuilder(), 1 + rnd.nextInt(maxLength));
+		if (kind < 15) return mutate(walk(new StringBuilder(), 1 + rnd.nextInt(maxLength)));
+		if (kind < 19) return sharedPrefixWalk(maxLength);
+		StringBuilder sb = new StringBuilder(randomString(rnd.nextInt(maxLength)));
+		sb.insert(rnd.nextInt(sb.length() + 1), FOREIGN);
+		return sb.toString();
+	}
+
+	private String randomString(int length) {
+		char[] c = new char[length];
+		for (int i = 0; i < length; i++) c[i] = alphabet.charAt(rnd.nextInt(alphabet.length()));
+		return new String(c);
+	}
+
+	/**
+	 * Extends a prefix by following random transitions, trying to stop in a final state.
+	 */
+	private String walk(StringBuilder sb, int length) {
+		int state = table.getStartState();
+		for (int i = 0; i < sb.length() && state != DFATable.NONE; i++) state = table.step(state, sb.charAt(i));
+		int k = table.getSymbolCount();
+		int limit = length + 16;
+		while (state != DFATable.NONE && sb.length() < limit) {
+			if (sb.length() >= length && table.isFinal(state)) break;
+			int a = rnd.nextInt(k);
+			int to = DFATable.NONE;
+			// Prefer an existing transition, trying a few symbols
+			for (int tries = 0; tries < k && to == DFATable.NONE; tries++) {
+				to = table.next(state, (a + tries) % k);
+				if (to != DFATable.NONE) a = (a + tries) % k;
+			}
+			if (to == DFATable.NONE) break;
+			sb.append(table.getSymbol(a));
+			state = to;
+		}
+		return sb.toString();
+	}
+
+	private String mutate(String s) {
+		StringBuilder sb = new StringBuilder(s);
+		char c = alphabet.charAt(rnd.nextInt(alphabet.length()));
+		int op = rnd.nextInt(3);
+		if (op == 0 || sb.length() == 0) sb.insert(rnd.nextInt(sb.length() + 1), c);
+		else if (op == 1) sb.setCharAt(rnd.nextInt(sb.length()), c);
+		else sb.deleteCharAt(rnd.nextInt(sb.length()));
+		return sb.toString();
+	}
+
+	private String sharedPrefixWalk(int maxLength) {
+		if (prefixes.size() < 4) prefixes.add(walk(new StringBuilder(), Math.max(1, maxLength / 2)));
+		String prefix = prefixes.get(rnd.nextInt(prefixes.size()));
+		return walk(new StringBuilder(prefix), prefix.length() + 1 + rnd.nextInt(Math.max(1, maxLength / 2)));
+	}
+}